@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import java.util.concurrent.TimeUnit;
+import javax.script.*;
+import org.openjdk.jmh.annotations.*;
+
+/*
+ * RenjinEngineBenchmark
+ *
+ * Measures the cost of creating a new Renjin ScriptEngine,
+ * the cost paid by the pool on warm-up and on every pool
+ * miss, eviction or recycle.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+@Fork(1)
+public class RenjinEngineBenchmark {
+
+    @Benchmark
+    public ScriptEngine createEngine() {
+        return Renjin.scriptEngine();
+    }
+
+    @Benchmark
+    public Object createEngineAndEvaluate() throws ScriptException {
+        return Renjin.scriptEngine().eval("1 + 1");
+    }
+
+}
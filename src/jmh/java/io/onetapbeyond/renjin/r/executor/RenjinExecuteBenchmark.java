@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.renjin.sexp.*;
+
+/*
+ * RenjinExecuteBenchmark
+ *
+ * Measures pooled RenjinTask execute() throughput from 1 to N
+ * threads. Tasks are not thread-safe so each benchmark thread
+ * builds its own task. The pool size limit is set using the
+ * renjin-r-executor-pool-size-limit System property, for example
+ * -jvmArgsAppend -Drenjin-r-executor-pool-size-limit=4.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RenjinExecuteBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class PoolState {
+
+        @Setup
+        public void warmup() throws InterruptedException {
+            Renjin.awaitPoolReady(5, TimeUnit.MINUTES);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TaskState {
+
+        @Param({ "arithmetic", "vector" })
+        public String script;
+
+        @Param({ "true", "false" })
+        public boolean serialized;
+
+        RenjinTask rTask;
+
+        @Setup
+        public void build() throws RenjinException {
+            Renjin builder = Renjin.R(!serialized, !serialized);
+            if("arithmetic".equals(script)) {
+                rTask = builder.code("x * 2 + 1")
+                               .input("x", 21)
+                               .build();
+            } else {
+                double[] values = new double[10000];
+                for(int i = 0; i < values.length; i++) {
+                    values[i] = i;
+                }
+                rTask = builder.code("cumsum(x)")
+                               .input("x", new DoubleArrayVector(values))
+                               .build();
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public RenjinResult execute1(PoolState pool, TaskState state) {
+        return state.rTask.execute();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public RenjinResult execute2(PoolState pool, TaskState state) {
+        return state.rTask.execute();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public RenjinResult execute4(PoolState pool, TaskState state) {
+        return state.rTask.execute();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public RenjinResult executeMax(PoolState pool, TaskState state) {
+        return state.rTask.execute();
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import io.onetapbeyond.renjin.r.executor.results.RenjinResultImpl;
+import io.onetapbeyond.renjin.r.executor.tasks.RenjinTaskImpl;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.renjin.sexp.*;
+
+/*
+ * RenjinResultBenchmark
+ *
+ * Measures RenjinResult output() decoding of serialized output
+ * data, with and without compression. Output is decoded once
+ * per result so each invocation decodes a new result.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class RenjinResultBenchmark {
+
+    @Param({ "1024", "65536", "1048576" })
+    public int size;
+
+    @Param({ "NONE", "FAST", "GZIP" })
+    public String codec;
+
+    RenjinCodec rCodec;
+    byte[] output;
+
+    @Setup
+    public void prepare() {
+        int[] values = new int[size];
+        for(int i = 0; i < size; i++) {
+            values[i] = i % 100;
+        }
+        rCodec = "NONE".equals(codec) ? null :
+            ("FAST".equals(codec) ? RenjinCodec.FAST : RenjinCodec.GZIP);
+        output = RenjinTaskImpl.serializeSEXP(new IntArrayVector(values),
+                                              rCodec, 0);
+    }
+
+    @Benchmark
+    public SEXP output() {
+        RenjinResult rResult = new RenjinResultImpl(
+            RenjinResultImpl.SUCCESS | RenjinResultImpl.OUTPUT_SERIALIZED,
+            output, 0L, null, null, null, null, rCodec, 0, null);
+        return rResult.output();
+    }
+
+}
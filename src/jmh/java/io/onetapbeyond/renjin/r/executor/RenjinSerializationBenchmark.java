@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import io.onetapbeyond.renjin.r.executor.tasks.RenjinTaskImpl;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.renjin.sexp.*;
+
+/*
+ * RenjinSerializationBenchmark
+ *
+ * Measures SEXP serialization and deserialization across vector
+ * sizes, for double vectors written on the fast path and for
+ * lists written by the R serializer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class RenjinSerializationBenchmark {
+
+    @Param({ "16", "1024", "65536", "1048576" })
+    public int size;
+
+    @Param({ "double", "list" })
+    public String type;
+
+    SEXP data;
+    byte[] serialized;
+
+    @Setup
+    public void prepare() {
+        double[] values = new double[size];
+        for(int i = 0; i < size; i++) {
+            values[i] = i * 0.5;
+        }
+        SEXP vector = new DoubleArrayVector(values);
+        data = "list".equals(type) ? new ListVector(vector) : vector;
+        serialized = RenjinTaskImpl.serializeSEXP(data);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return RenjinTaskImpl.serializeSEXP(data);
+    }
+
+    @Benchmark
+    public SEXP deserialize() {
+        return RenjinTaskImpl.deserializeSEXP(serialized);
+    }
+
+    @Benchmark
+    public SEXP roundTrip() {
+        return RenjinTaskImpl.deserializeSEXP(
+                    RenjinTaskImpl.serializeSEXP(data));
+    }
+
+}
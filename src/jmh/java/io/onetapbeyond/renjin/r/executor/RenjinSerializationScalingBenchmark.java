@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import io.onetapbeyond.renjin.r.executor.tasks.RenjinTaskImpl;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.renjin.sexp.*;
+
+/*
+ * RenjinSerializationScalingBenchmark
+ *
+ * Measures R serializer round trip throughput as the number of
+ * threads grows, from a single thread to one thread per core.
+ * Serialization borrows Renjin Contexts from a pool sized to the
+ * cores, so throughput should scale up to the core count and
+ * flatten, not collapse, beyond it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class RenjinSerializationScalingBenchmark {
+
+    @Param({ "16", "4096" })
+    public int size;
+
+    SEXP data;
+
+    @Setup
+    public void prepare() {
+        double[] values = new double[size];
+        for(int i = 0; i < size; i++) {
+            values[i] = i * 0.5;
+        }
+        // List values are serialized by the R serializer.
+        data = new ListVector(new DoubleArrayVector(values),
+                              new StringArrayVector("scaling"));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public SEXP roundTrip1() {
+        return roundTrip();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public SEXP roundTrip2() {
+        return roundTrip();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public SEXP roundTrip4() {
+        return roundTrip();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public SEXP roundTripMax() {
+        return roundTrip();
+    }
+
+    private SEXP roundTrip() {
+        return RenjinTaskImpl.deserializeSEXP(
+                    RenjinTaskImpl.serializeSEXP(data));
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor.tasks;
+
+import io.onetapbeyond.renjin.r.executor.Renjin;
+import java.util.concurrent.TimeUnit;
+import javax.script.*;
+import org.openjdk.jmh.annotations.*;
+import org.renjin.script.RenjinScriptEngine;
+import org.renjin.sexp.*;
+
+/*
+ * RenjinCleanupBenchmark
+ *
+ * Measures the cost of clearing a Renjin ScriptEngine between
+ * tasks, the native workspace reset against evaluation of R
+ * code to clear the workspace, across workspace sizes.
+ *
+ * Clearing an empty workspace measures nothing, so each operation
+ * populates the workspace natively then clears it, rather than
+ * relying on per-invocation setup that is unreliable at this
+ * scale. Populating costs the same on both variants, so the
+ * difference between them is the difference in clear cost. The
+ * workspace holds visible bindings only, so both variants remove
+ * exactly the same bindings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class RenjinCleanupBenchmark {
+
+    /*
+     * R code clearing visible workspace bindings, as evaluated on
+     * engines without a native reset.
+     */
+    private static final String CLEAR = "rm(list = ls())";
+
+    @Param({ "1", "16", "256" })
+    public int bindings;
+
+    RenjinScriptEngine engine;
+    Environment global;
+    Symbol[] names;
+    SEXP value;
+
+    @Setup(Level.Trial)
+    public void createEngine() {
+        engine = (RenjinScriptEngine) Renjin.scriptEngine();
+        global = engine.getTopLevelContext().getGlobalEnvironment();
+        names = new Symbol[bindings];
+        for(int i = 0; i < bindings; i++) {
+            names[i] = Symbol.get("v" + i);
+        }
+        value = new DoubleArrayVector(1.0);
+    }
+
+    @Benchmark
+    public void populateAndReset() {
+        populateWorkspace();
+        RenjinTaskImpl.resetEngine(engine);
+    }
+
+    @Benchmark
+    public Object populateAndClearByEval() throws ScriptException {
+        populateWorkspace();
+        return engine.eval(CLEAR);
+    }
+
+    private void populateWorkspace() {
+        for(Symbol name : names) {
+            global.setVariable(name, value);
+        }
+    }
+
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import io.onetapbeyond.renjin.r.executor.manager.RenjinMetrics;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.renjin.sexp.*;
+
+/*
+ * RenjinLoadTest
+ *
+ * Load generator driving pooled RenjinTask execute() from a
+ * configurable number of threads, using a mix of R script profiles
+ * under each combination of task and result serialization. Reports
+ * throughput and p50, p99 and p999 latency per profile.
+ *
+ * Options, all optional:
+ *
+ *   --threads=8          concurrent client threads
+ *   --duration=30        measured seconds per serialization mode
+ *   --warmup=5           unmeasured seconds before each mode
+ *   --profiles=tiny,frame,vector
+ *   --modes=none,task,result,both
+ *   --size=100000        records on frame and vector profiles
+ *
+ * Modes name the serialization enabled. When task serialization is
+ * enabled tasks are serialized and deserialized before execution,
+ * when result serialization is enabled results are serialized and
+ * deserialized and output decoded, simulating distribution across
+ * JVMs. Pool behavior is controlled by the usual System properties,
+ * for example starting with renjin-r-executor-pool-warmup=0 and a
+ * large renjin-r-executor-pool-size-limit reproduces an engine
+ * creation storm.
+ */
+public class RenjinLoadTest {
+
+    private static final String[] PROFILES = { "tiny", "frame", "vector" };
+    private static final String[] MODES = { "none", "task", "result", "both" };
+
+    private final int threads;
+    private final int duration;
+    private final int warmup;
+    private final String[] profiles;
+    private final String[] modes;
+    private final int size;
+
+    private final SEXP values;
+    private final SEXP groups;
+
+    public RenjinLoadTest(Map<String,String> options) {
+        threads = Integer.parseInt(option(options, "threads", "8"));
+        duration = Integer.parseInt(option(options, "duration", "30"));
+        warmup = Integer.parseInt(option(options, "warmup", "5"));
+        profiles = option(options, "profiles", String.join(",", PROFILES)).split(",");
+        modes = option(options, "modes", String.join(",", MODES)).split(",");
+        size = Integer.parseInt(option(options, "size", "100000"));
+
+        double[] x = new double[size];
+        int[] g = new int[size];
+        Random random = new Random(42);
+        for(int i = 0; i < size; i++) {
+            x[i] = random.nextGaussian();
+            g[i] = i % 16;
+        }
+        values = new DoubleArrayVector(x);
+        groups = new IntArrayVector(g);
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        Map<String,String> options = new HashMap<String,String>();
+        for(String arg : args) {
+            if(!arg.startsWith("--") || arg.indexOf('=') < 0)
+                throw new IllegalArgumentException("Unknown option " + arg);
+            options.put(arg.substring(2, arg.indexOf('=')),
+                        arg.substring(arg.indexOf('=') + 1));
+        }
+
+        new RenjinLoadTest(options).run(System.out);
+        System.exit(0);
+    }
+
+    public void run(PrintStream out) throws Exception {
+
+        out.printf("threads=%d duration=%ds warmup=%ds size=%d pool=%d%n",
+                   threads, duration, warmup, size,
+                   RenjinMetrics.METRICS.getMaxPoolSize());
+
+        for(String mode : modes) {
+            if(warmup > 0)
+                drive(mode, warmup);
+            long created = RenjinMetrics.METRICS.getEnginesCreated();
+            long acquireTimeouts = RenjinMetrics.METRICS.getAcquireTimeouts();
+            Map<String,Recorder> recorders = drive(mode, duration);
+            report(out, mode, recorders,
+                   RenjinMetrics.METRICS.getEnginesCreated() - created,
+                   RenjinMetrics.METRICS.getAcquireTimeouts() - acquireTimeouts);
+        }
+    }
+
+    /*
+     * Drive load for the duration, returning latencies recorded
+     * per profile, merged across client threads.
+     */
+    private Map<String,Recorder> drive(String mode, int seconds)
+                                            throws Exception {
+
+        boolean serializeTask = "task".equals(mode) || "both".equals(mode);
+        boolean serializeResult = "result".equals(mode) || "both".equals(mode);
+        if(!Arrays.asList(MODES).contains(mode))
+            throw new IllegalArgumentException("Unknown mode " + mode);
+
+        ExecutorService clients = Executors.newFixedThreadPool(threads);
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Map<String,Recorder>>> futures =
+            new ArrayList<Future<Map<String,Recorder>>>();
+
+        for(int t = 0; t < threads; t++) {
+            final int client = t;
+            futures.add(clients.submit(() -> {
+                Map<String,Recorder> local = new TreeMap<String,Recorder>();
+                start.await();
+                long op = client;
+                while(running.get()) {
+                    String profile = profiles[(int) (op++ % profiles.length)];
+                    Recorder recorder =
+                        local.computeIfAbsent(profile, p -> new Recorder());
+                    long begin = System.nanoTime();
+                    boolean ok;
+                    try {
+                        ok = execute(profile, serializeTask, serializeResult);
+                    } catch(Exception ex) {
+                        ok = false;
+                    }
+                    recorder.record(System.nanoTime() - begin, ok);
+                }
+                return local;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        running.set(false);
+
+        Map<String,Recorder> merged = new TreeMap<String,Recorder>();
+        for(Future<Map<String,Recorder>> future : futures) {
+            for(Map.Entry<String,Recorder> pair : future.get().entrySet()) {
+                merged.computeIfAbsent(pair.getKey(),
+                    p -> new Recorder()).merge(pair.getValue());
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+        for(Recorder recorder : merged.values()) {
+            recorder.elapsed = elapsed;
+        }
+        clients.shutdown();
+        return merged;
+    }
+
+    private boolean execute(String profile,
+                            boolean serializeTask,
+                            boolean serializeResult) throws Exception {
+
+        RenjinTask rTask = task(profile, !serializeTask, !serializeResult);
+        if(serializeTask)
+            rTask = roundTrip(rTask);
+        RenjinResult rResult = rTask.execute();
+        if(serializeResult) {
+            rResult = roundTrip(rResult);
+            rResult.output();
+        }
+        return rResult.success();
+    }
+
+    private RenjinTask task(String profile,
+                            boolean disableTaskSerialization,
+                            boolean disableResultSerialization)
+                                            throws RenjinException {
+
+        Renjin builder = Renjin.R(disableTaskSerialization,
+                                  disableResultSerialization);
+        switch(profile) {
+            case "tiny":
+                return builder.code("x * 2 + 1").input("x", 21).build();
+            case "frame":
+                return builder.code("df <- data.frame(g = g, v = x)\n" +
+                                    "tapply(df$v, df$g, mean)")
+                              .input("x", values)
+                              .input("g", groups)
+                              .build();
+            case "vector":
+                return builder.code("cumsum(x)").input("x", values).build();
+            default:
+                throw new IllegalArgumentException("Unknown profile " + profile);
+        }
+    }
+
+    private void report(PrintStream out,
+                        String mode,
+                        Map<String,Recorder> recorders,
+                        long enginesCreated,
+                        long acquireTimeouts) {
+
+        Recorder all = new Recorder();
+        for(Recorder recorder : recorders.values()) {
+            all.merge(recorder);
+            all.elapsed = recorder.elapsed;
+        }
+
+        out.printf("%nmode=%s engines-created=%d acquire-timeouts=%d%n",
+                   mode, enginesCreated, acquireTimeouts);
+        out.printf("%-8s %10s %8s %10s %10s %10s %10s %10s%n", "profile",
+                   "ops", "errors", "ops/s", "p50 ms", "p99 ms",
+                   "p999 ms", "max ms");
+        for(Map.Entry<String,Recorder> pair : recorders.entrySet()) {
+            line(out, pair.getKey(), pair.getValue());
+        }
+        line(out, "all", all);
+    }
+
+    private void line(PrintStream out, String name, Recorder recorder) {
+        out.printf("%-8s %10d %8d %10.1f %10.3f %10.3f %10.3f %10.3f%n",
+                   name, recorder.count, recorder.errors,
+                   recorder.throughput(),
+                   millis(recorder.percentile(0.5)),
+                   millis(recorder.percentile(0.99)),
+                   millis(recorder.percentile(0.999)),
+                   millis(recorder.percentile(1.0)));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static String option(Map<String,String> options,
+                                 String name, String defaultValue) {
+        String value = options.get(name);
+        return (value != null) ? value : defaultValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T value) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try(ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(value);
+        }
+        try(ObjectInputStream ois = new ObjectInputStream(
+                new ByteArrayInputStream(baos.toByteArray()))) {
+            return (T) ois.readObject();
+        }
+    }
+
+    /*
+     * Exact latency recorder, confined to a single client thread
+     * until merged.
+     */
+    private static class Recorder {
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private int errors;
+        private long elapsed;
+        private boolean sorted;
+
+        void record(long nanos, boolean ok) {
+            if(count == latencies.length)
+                latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = nanos;
+            if(!ok)
+                errors++;
+            sorted = false;
+        }
+
+        void merge(Recorder other) {
+            for(int i = 0; i < other.count; i++) {
+                record(other.latencies[i], true);
+            }
+            errors += other.errors;
+        }
+
+        double throughput() {
+            return (elapsed == 0) ? 0 : count / (elapsed / 1e9);
+        }
+
+        long percentile(double quantile) {
+            if(count == 0)
+                return 0;
+            if(!sorted) {
+                Arrays.sort(latencies, 0, count);
+                sorted = true;
+            }
+            int rank = (int) Math.ceil(quantile * count);
+            return latencies[Math.min(count, Math.max(1, rank)) - 1];
+        }
+    }
+
+}
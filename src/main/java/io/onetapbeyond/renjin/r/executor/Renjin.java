@@ -15,7 +15,14 @@
  */
 package io.onetapbeyond.renjin.r.executor;
 
+import io.onetapbeyond.renjin.r.executor.manager.RenjinInputRegistry;
+import io.onetapbeyond.renjin.r.executor.manager.RenjinMetrics;
+import io.onetapbeyond.renjin.r.executor.manager.RenjinManager;
+import io.onetapbeyond.renjin.r.executor.manager.RenjinMappingCache;
+import io.onetapbeyond.renjin.r.executor.tasks.RenjinBatchImpl;
+import io.onetapbeyond.renjin.r.executor.tasks.RenjinMappedInput;
 import io.onetapbeyond.renjin.r.executor.tasks.RenjinTaskImpl;
+import io.onetapbeyond.renjin.r.executor.tasks.RenjinVectorBatchImpl;
 
 import javax.script.*;
 import org.renjin.sexp.*;
@@ -23,10 +30,19 @@ import org.renjin.eval.Context;
 import org.renjin.primitives.io.serialization.*;
 
 import java.io.Reader;
-import java.io.ByteArrayOutputStream;
 import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Builder of executable R tasks targeting the Renjin interpreter
@@ -51,6 +67,11 @@ import java.util.HashMap;
  * the {@link #R(boolean,boolean) Renjin.R(boolean, boolean)} method
  * to optionally bypass {@link RenjinTask} and {@link RenjinResult}
  * serialization.
+ * Packages attached or detached by task code, for example using
+ * {@code library(...)} or {@code attach(...)}, are undone once the
+ * task completes. Packages required by every task are best loaded
+ * once per engine using the
+ * <i>renjin-r-executor-pool-prelude</i> script.
  */
 public class Renjin {
 
@@ -66,6 +87,24 @@ public class Renjin {
 	 * RenjinTask primitive data inputs.
 	 */
 	private Map<String,Object> primInputs = new HashMap<String,Object>();
+	/*
+	 * RenjinTask streamed SEXP data inputs.
+	 */
+	private Map<String,InputStream> streamInputs =
+								new HashMap<String,InputStream>();
+	/*
+	 * RenjinTask memory mapped SEXP data inputs.
+	 */
+	private Map<String,RenjinMappedInput> mappedInputs =
+								new HashMap<String,RenjinMappedInput>();
+	/*
+	 * RenjinTask registered SEXP data inputs, by handle.
+	 */
+	private Map<String,String> refInputs = new HashMap<String,String>();
+	/*
+	 * RenjinTask output streamed on sink, optional.
+	 */
+	private OutputStream outputSink;
 	/*
 	 * By default, all data maintained on RenjinTask are serialized.
 	 */
@@ -74,6 +113,25 @@ public class Renjin {
 	 * By default, all data maintained on RenjinResult are serialized.
 	 */
 	private boolean disableResultSerialization;
+	/*
+	 * By default, RenjinResult retains serialized data once deserialized.
+	 */
+	private boolean releaseSerializedResult;
+	/*
+	 * By default, RenjinTask inputs are echoed on RenjinResult.
+	 */
+	private boolean disableInputEcho;
+	/*
+	 * RenjinTask execution timeout (ms), zero for default timeout.
+	 */
+	private long timeout;
+	/*
+	 * Codec applied to serialized SEXP data, null if compression
+	 * disabled. Serialized data smaller than compressionThreshold
+	 * bytes is not compressed.
+	 */
+	private RenjinCodec codec;
+	private int compressionThreshold;
 
 	/*
 	 * Flag tracking status of Renjin builder instance to enforce "clean"
@@ -160,42 +218,152 @@ public class Renjin {
 	 * @param name data input name
 	 * @param value data input value
 	 * @return the current Renjin task builder instance
-	 * @throws RenjinException if input data could not be serialized
+	 * @throws RenjinException if input data could not be captured
 	 */
 	public Renjin input(String name, Object value) throws RenjinException {
 
 		try {
+			captureInput(name, value, sexpInputs, primInputs, streamInputs);
+		} catch(Exception iex) {
+			throw new RenjinException(iex);
+		}
+		return this;
+	}
 
-			if(value instanceof SEXP) {
+	/**
+	 * Specify a streamed data input for the executable R task. The
+	 * stream must provide a single SEXP in serialized form, such as
+	 * the data written by {@link RenjinResult#output(OutputStream)}.
+	 * The stream is read directly into the Renjin
+	 * {@link javax.script.ScriptEngine} when the task is executed,
+	 * so the data is never held in memory in serialized form in full,
+	 * and is then closed. As a stream can be read only once, a task
+	 * with streamed data inputs is single-use: it can be executed or
+	 * serialized only once, later attempts fail. Streamed data inputs
+	 * are not echoed on the {@link RenjinResult}.
+	 * @param name data input name
+	 * @param source data input stream
+	 * @return the current Renjin task builder instance
+	 * @throws RenjinException if data input could not be captured
+	 */
+	public Renjin input(String name, InputStream source) throws RenjinException {
+		return input(name, (Object) source);
+	}
 
-				if(disableTaskSerialization) {
+	/**
+	 * Specify a streamed data input for the executable R task, see
+	 * {@link #input(String, InputStream)}.
+	 * @param name data input name
+	 * @param source data input channel
+	 * @return the current Renjin task builder instance
+	 * @throws RenjinException if data input could not be captured
+	 */
+	public Renjin input(String name,
+						ReadableByteChannel source) throws RenjinException {
+		return input(name, (Object) source);
+	}
 
-					/*
-					 * Capture SEXP encoded input data.
-					 */
-					sexpInputs.put(name, value);
+	/**
+	 * Specify a registered data input for the executable R task, see
+	 * {@link #register(SEXP)}. Only the handle on the data is carried
+	 * on the task, so the data is neither serialized nor deserialized
+	 * per task. The data must be registered on the JVM executing the
+	 * task, otherwise task execution fails. Registered data inputs are
+	 * not echoed on the {@link RenjinResult}.
+	 * @param name data input name
+	 * @param handle handle on registered data
+	 * @return the current Renjin task builder instance
+	 * @throws RenjinException if handle is null
+	 */
+	public Renjin inputRef(String name, String handle) throws RenjinException {
 
-				} else {
+		if(handle == null)
+			throw new RenjinException("R input handle not specified.");
 
-					/*
-					 * Capture SEXP serialized input data.
-					 */
-					sexpInputs.put(name,
-						RenjinTaskImpl.serializeSEXP((SEXP) value));
+		refInputs.put(name, handle);
+		return this;
+	}
 
-				}
+	/**
+	 * Specify a memory mapped data input for the executable R task.
+	 * The file, holding little-endian IEEE 754 doubles, is bound as a
+	 * read-only R double vector backed directly by a memory mapping
+	 * of the file. Mappings are shared, so tasks and engines binding
+	 * the same file share one off-heap copy of the data, with no
+	 * deserialization and no per-task heap cost. A serialized task
+	 * carries only a reference to the file, which must be available
+	 * at the same path on the JVM executing the task. Memory mapped
+	 * data inputs are not echoed on the {@link RenjinResult}.
+	 * <p>
+	 * A single mapping is limited to 2 GB ({@link Integer#MAX_VALUE}
+	 * bytes), so larger files must be bound as several regions. When
+	 * the region extends to the end of the file, the limit is checked
+	 * on task execution and the task fails if it is exceeded.
+	 * @param name data input name
+	 * @param file file holding the vector data
+	 * @return the current Renjin task builder instance
+	 * @throws RenjinException if the region exceeds the mapping limit
+	 */
+	public Renjin inputDoubles(String name, Path file)
+											throws RenjinException {
+		return inputDoubles(name, file, 0, -1, ByteOrder.LITTLE_ENDIAN);
+	}
 
-			} else {
+	/**
+	 * Specify a memory mapped data input for the executable R task,
+	 * bound on a region of the file, see {@link #inputDoubles(String, Path)}.
+	 * @param name data input name
+	 * @param file file holding the vector data
+	 * @param offset offset (bytes) of the region within the file
+	 * @param length number of doubles in the region, or -1 for all
+	 * doubles from offset to the end of the file
+	 * @param order byte order of the doubles in the file
+	 * @return the current Renjin task builder instance
+	 * @throws RenjinException if the region exceeds the mapping limit
+	 */
+	public Renjin inputDoubles(String name, Path file,
+							   long offset, int length, ByteOrder order)
+											throws RenjinException {
+		checkRegion(name, length, 8);
+		mappedInputs.put(name, new RenjinMappedInput(
+			file.toAbsolutePath().toString(), RenjinMappedInput.DOUBLE,
+			offset, length, order));
+		return this;
+	}
 
-				/*
-				 * Capture primitive input data.
-				 */
-				primInputs.put(name, value);
-			}
+	/**
+	 * Specify a memory mapped data input for the executable R task.
+	 * The file, holding little-endian 32-bit integers, is bound as a
+	 * read-only R integer vector, see {@link #inputDoubles(String, Path)}.
+	 * @param name data input name
+	 * @param file file holding the vector data
+	 * @return the current Renjin task builder instance
+	 * @throws RenjinException if the region exceeds the mapping limit
+	 */
+	public Renjin inputInts(String name, Path file)
+											throws RenjinException {
+		return inputInts(name, file, 0, -1, ByteOrder.LITTLE_ENDIAN);
+	}
 
-		} catch(Exception iex) {
-			throw new RenjinException(iex);
-		}
+	/**
+	 * Specify a memory mapped data input for the executable R task,
+	 * bound on a region of the file, see {@link #inputInts(String, Path)}.
+	 * @param name data input name
+	 * @param file file holding the vector data
+	 * @param offset offset (bytes) of the region within the file
+	 * @param length number of integers in the region, or -1 for all
+	 * integers from offset to the end of the file
+	 * @param order byte order of the integers in the file
+	 * @return the current Renjin task builder instance
+	 * @throws RenjinException if the region exceeds the mapping limit
+	 */
+	public Renjin inputInts(String name, Path file,
+							long offset, int length, ByteOrder order)
+											throws RenjinException {
+		checkRegion(name, length, 4);
+		mappedInputs.put(name, new RenjinMappedInput(
+			file.toAbsolutePath().toString(), RenjinMappedInput.INT,
+			offset, length, order));
 		return this;
 	}
 
@@ -203,7 +371,7 @@ public class Renjin {
 	 * Specify data inputs for the executable R task.
 	 * @param nameValues a {@link java.util.Map} of data input name-value pairs.
 	 * @return the current Renjin task builder instance
-	 * @throws RenjinException if input data could not be serialized
+	 * @throws RenjinException if input data could not be captured
 	 */
 	public Renjin input(Map<String,Object> nameValues) throws RenjinException {
 
@@ -218,6 +386,125 @@ public class Renjin {
 		return this;
 	}
 
+	/**
+	 * Specify a stream on which the data outputs generated on task
+	 * execution are written in serialized form, rather than being
+	 * returned on the {@link RenjinResult}. The data outputs can be
+	 * passed as a data input on a subsequent task using
+	 * {@link #input(String, InputStream)}. The stream is local to the
+	 * JVM on which the task is built, if the task is serialized data
+	 * outputs are returned on the {@link RenjinResult}. The stream
+	 * is flushed but not closed. Not supported on batches of tasks.
+	 * @param sink stream on which data outputs are written
+	 * @return the current Renjin task builder instance
+	 */
+	public Renjin output(OutputStream sink) {
+		this.outputSink = sink;
+		return this;
+	}
+
+	/**
+	 * Specify a channel on which the data outputs generated on task
+	 * execution are written in serialized form, see
+	 * {@link #output(OutputStream)}.
+	 * @param sink channel on which data outputs are written
+	 * @return the current Renjin task builder instance
+	 */
+	public Renjin output(WritableByteChannel sink) {
+		this.outputSink = (sink == null) ? null : Channels.newOutputStream(sink);
+		return this;
+	}
+
+	/**
+	 * Specify if {@link RenjinResult} should release serialized data
+	 * once deserialized. By default, a {@link RenjinResult} retains
+	 * serialized output and input data after deserializing that data
+	 * on first access. When released, only the deserialized data is
+	 * retained, avoiding a duplicate copy on the heap, at the cost of
+	 * re-serializing the data if the {@link RenjinResult} is itself
+	 * serialized again.
+	 * @param release enable release of serialized result data
+	 * @return the current Renjin task builder instance
+	 */
+	public Renjin releaseSerializedResult(boolean release) {
+		this.releaseSerializedResult = release;
+		return this;
+	}
+
+	/**
+	 * Specify if the data inputs on the executable R task are echoed
+	 * on the {@link RenjinResult}. By default, all data inputs are
+	 * echoed and made available on the {@link RenjinResult#input}
+	 * method. When echo is disabled, data inputs are excluded from the
+	 * {@link RenjinResult}, reducing the size of the result, and the
+	 * {@link RenjinResult#input} method returns an empty
+	 * {@link java.util.Map}.
+	 * @param echo enable echo of data inputs on the result
+	 * @return the current Renjin task builder instance
+	 */
+	public Renjin echoInputs(boolean echo) {
+		this.disableInputEcho = !echo;
+		return this;
+	}
+
+	/**
+	 * Specify the execution timeout for the executable R task. If R
+	 * code execution does not complete within the timeout the task
+	 * fails, see {@link RenjinResult#timedOut}. When no timeout is
+	 * specified, the default timeout identified by the
+	 * <i>renjin-r-executor-task-timeout</i> System property (ms)
+	 * applies, if any.
+	 * <p>
+	 * On timeout the evaluating thread is interrupted, but R code
+	 * that ignores interrupts keeps running. A pooled engine left
+	 * running such code stays counted against the pool limit until
+	 * the code ends, so runaway code can exhaust the pool but never
+	 * grow it. A supplied engine left running such code remains the
+	 * responsibility of the application and a warning is logged.
+	 * @param timeout the maximum time to wait for R code execution
+	 * @param unit the time unit of the timeout
+	 * @return the current Renjin task builder instance
+	 * @throws RenjinException if timeout is not positive
+	 */
+	public Renjin timeout(long timeout, TimeUnit unit) throws RenjinException {
+
+		if(timeout <= 0)
+			throw new RenjinException("R task timeout must be positive.");
+
+		this.timeout = Math.max(1, unit.toMillis(timeout));
+		return this;
+	}
+
+	/**
+	 * Specify the codec used to compress serialized SEXP data on the
+	 * executable R task and on the {@link RenjinResult}. Serialized data
+	 * smaller than the threshold identified by the
+	 * <i>renjin-r-executor-compression-threshold</i> System property
+	 * (bytes, default 1024) is not compressed. Compression has no effect
+	 * when serialization is disabled.
+	 * @param codec the codec, see {@link RenjinCodec}
+	 * @return the current Renjin task builder instance
+	 */
+	public Renjin compress(RenjinCodec codec) {
+		return compress(codec, DEFAULT_COMPRESSION_THRESHOLD);
+	}
+
+	/**
+	 * Specify the codec used to compress serialized SEXP data on the
+	 * executable R task and on the {@link RenjinResult}. Compression has
+	 * no effect when serialization is disabled.
+	 * @param codec the codec, see {@link RenjinCodec}
+	 * @param threshold serialized data smaller than threshold bytes is
+	 * not compressed
+	 * @return the current Renjin task builder instance
+	 */
+	public Renjin compress(RenjinCodec codec, int threshold) {
+
+		this.codec = (codec == RenjinCodec.NONE) ? null : codec;
+		this.compressionThreshold = Math.max(0, threshold);
+		return this;
+	}
+
 	/**
 	 * Create an instance of an executable R task.
 	 * @return an instance of a new executable {@link RenjinTask}
@@ -268,10 +555,320 @@ public class Renjin {
 			throw new RenjinException("R code on task not specified.");
 
 		return new RenjinTaskImpl(code, sexpInputs, primInputs,
+					 streamInputs, mappedInputs, refInputs,
 					 disableTaskSerialization, disableResultSerialization,
+					 releaseSerializedResult, disableInputEcho, timeout,
+					 codec, compressionThreshold, outputSink,
 					 suppliedEngine, autoClearSuppliedEngine);
 	}
 
+	/**
+	 * Create an instance of an executable batch of R tasks, one task
+	 * per input set, sharing the R code and any inputs specified on
+	 * this builder. All tasks in the batch are executed on a single
+	 * Renjin {@link javax.script.ScriptEngine}, see {@link RenjinBatch}.
+	 * @param inputSets a {@link java.util.List} of data input name-value
+	 * pairs, one {@link java.util.Map} per task in the batch
+	 * @return an instance of a new executable {@link RenjinBatch}
+	 * @throws RenjinException if {@link RenjinTask} definition is
+	 * incomplete or input data could not be captured
+	 */
+	public RenjinBatch buildBatch(List<Map<String,Object>> inputSets)
+											throws RenjinException {
+
+		/*
+		 * Enforce "clean" Rejnin builder policy.
+		 */
+		if(!cleanBuilder)
+			throw new RenjinException("Renjin builder deactivated.");
+		else
+			cleanBuilder = false;
+
+		/*
+		 * Enforce required properties on RenjinBatch.
+		 */
+		if(code == null)
+			throw new RenjinException("R code on task not specified.");
+		if(inputSets == null)
+			throw new RenjinException("R input sets on batch not specified.");
+		if(!streamInputs.isEmpty())
+			throw new RenjinException("R stream inputs can not be shared on batch.");
+		if(outputSink != null)
+			throw new RenjinException("R output sink not supported on batch.");
+
+		List<RenjinTaskImpl> tasks =
+					new ArrayList<RenjinTaskImpl>(inputSets.size());
+
+		try {
+			for(Map<String,Object> inputSet : inputSets) {
+
+				Map<String,Object> taskSexpInputs =
+								new HashMap<String,Object>(sexpInputs);
+				Map<String,Object> taskPrimInputs =
+								new HashMap<String,Object>(primInputs);
+				Map<String,InputStream> taskStreamInputs =
+								new HashMap<String,InputStream>();
+				for (Map.Entry<String, Object> pair : inputSet.entrySet()) {
+					captureInput(pair.getKey(), pair.getValue(),
+						taskSexpInputs, taskPrimInputs, taskStreamInputs);
+				}
+
+				tasks.add(new RenjinTaskImpl(code, taskSexpInputs,
+							taskPrimInputs, taskStreamInputs,
+							new HashMap<String,RenjinMappedInput>(mappedInputs),
+							new HashMap<String,String>(refInputs),
+							disableTaskSerialization,
+							disableResultSerialization,
+							releaseSerializedResult, disableInputEcho,
+							timeout, codec, compressionThreshold,
+							null, null, false));
+			}
+		} catch(Exception iex) {
+			throw new RenjinException(iex);
+		}
+
+		return new RenjinBatchImpl(tasks);
+	}
+
+	/**
+	 * Create an instance of an executable batch of R tasks in
+	 * vectorized mode. Each column of input data is bound as an R
+	 * vector on a single Renjin {@link javax.script.ScriptEngine},
+	 * the R code is executed once and the output is split into one
+	 * {@link RenjinResult} per input record. The R code must return
+	 * a vector, list or data.frame with one element or row per
+	 * input record. Any inputs specified on this builder are also
+	 * made available to the R code.
+	 * @param columns a {@link java.util.Map} of column name to column
+	 * data, where column data is an atomic {@link org.renjin.sexp.SEXP}
+	 * vector or a double[], int[], boolean[] or String[]; all columns
+	 * must have the same number of records
+	 * @return an instance of a new executable {@link RenjinBatch}
+	 * @throws RenjinException if {@link RenjinTask} definition is
+	 * incomplete or columns are missing, mismatched or unsupported
+	 */
+	public RenjinBatch buildVectorized(Map<String,Object> columns)
+											throws RenjinException {
+		return buildVectorized(null, columns);
+	}
+
+	/**
+	 * Create an instance of an executable batch of R tasks in
+	 * vectorized mode, see {@link #buildVectorized(Map)}. In addition
+	 * to binding each column of input data as an R vector, the columns
+	 * are bound together as an R data.frame named <i>frame</i>.
+	 * @param frame name of the data.frame bound on the R code
+	 * @param columns a {@link java.util.Map} of column name to column
+	 * data, see {@link #buildVectorized(Map)}
+	 * @return an instance of a new executable {@link RenjinBatch}
+	 * @throws RenjinException if {@link RenjinTask} definition is
+	 * incomplete or columns are missing, mismatched or unsupported
+	 */
+	public RenjinBatch buildVectorized(String frame,
+									   Map<String,Object> columns)
+											throws RenjinException {
+
+		if(columns == null || columns.isEmpty())
+			throw new RenjinException("R input columns on batch not specified.");
+		if(outputSink != null)
+			throw new RenjinException("R output sink not supported on batch.");
+
+		int records = -1;
+		List<String> names = new ArrayList<String>(columns.size());
+		List<SEXP> values = new ArrayList<SEXP>(columns.size());
+
+		for (Map.Entry<String, Object> pair : columns.entrySet()) {
+
+			SEXP column = columnSEXP(pair.getValue());
+			if(records == -1)
+				records = column.length();
+			else if(records != column.length())
+				throw new RenjinException("R input column \"" +
+					pair.getKey() + "\" length does not match " + records + ".");
+
+			input(pair.getKey(), column);
+			names.add(pair.getKey());
+			values.add(column);
+		}
+
+		/*
+		 * Bind columns together as data.frame, built natively so
+		 * column and frame names are never interpreted as R code.
+		 */
+		if(frame != null)
+			input(frame, dataFrame(names, values, records));
+
+		RenjinTaskImpl task = (RenjinTaskImpl) build();
+		return new RenjinVectorBatchImpl(task, records, names);
+	}
+
+	/**
+	 * Create an instance of an executable batch of R tasks. All tasks
+	 * in the batch are executed on a single Renjin
+	 * {@link javax.script.ScriptEngine}, see {@link RenjinBatch}. Any
+	 * {@link javax.script.ScriptEngine} supplied when building the
+	 * individual tasks is ignored.
+	 * @param tasks the R tasks to execute, in order
+	 * @return an instance of a new executable {@link RenjinBatch}
+	 * @throws RenjinException if tasks is null or contains tasks
+	 * not created by the {@link Renjin} task builder
+	 */
+	public static RenjinBatch batch(List<RenjinTask> tasks)
+											throws RenjinException {
+
+		if(tasks == null)
+			throw new RenjinException("R tasks on batch not specified.");
+
+		List<RenjinTaskImpl> batchTasks =
+						new ArrayList<RenjinTaskImpl>(tasks.size());
+		for(RenjinTask task : tasks) {
+			if(!(task instanceof RenjinTaskImpl))
+				throw new RenjinException("R task not built by Renjin builder.");
+			batchTasks.add((RenjinTaskImpl) task);
+		}
+		return new RenjinBatchImpl(batchTasks);
+	}
+
+	/*
+	 * Capture data input on SEXP, primitive and stream input maps.
+	 */
+	private void captureInput(String name,
+							  Object value,
+							  Map<String,Object> sexpInputs,
+							  Map<String,Object> primInputs,
+							  Map<String,InputStream> streamInputs) {
+
+		if(value instanceof InputStream) {
+
+			/*
+			 * Capture streamed SEXP input data.
+			 */
+			streamInputs.put(name, (InputStream) value);
+
+		} else if(value instanceof ReadableByteChannel) {
+
+			streamInputs.put(name,
+				Channels.newInputStream((ReadableByteChannel) value));
+
+		} else if(value instanceof SEXP) {
+
+			/*
+			 * Capture SEXP encoded input data. If task serialization
+			 * is enabled, data is serialized only if and when the task
+			 * itself is serialized, so tasks executed locally never pay
+			 * the cost of serialization.
+			 */
+			sexpInputs.put(name, value);
+
+		} else {
+
+			/*
+			 * Capture primitive input data.
+			 */
+			primInputs.put(name, value);
+		}
+	}
+
+	/*
+	 * Build R data.frame on columns, equivalent to data.frame(...,
+	 * stringsAsFactors = FALSE, check.names = FALSE).
+	 */
+	private static SEXP dataFrame(List<String> names,
+								  List<SEXP> columns,
+								  int records) {
+		int[] rowNames = new int[records];
+		for(int i = 0; i < records; i++) {
+			rowNames[i] = i + 1;
+		}
+		return new ListVector(columns, AttributeMap.builder()
+			.set(Symbol.get("names"),
+				new StringArrayVector(names.toArray(new String[names.size()])))
+			.set(Symbol.get("class"), new StringArrayVector("data.frame"))
+			.set(Symbol.get("row.names"), new IntArrayVector(rowNames))
+			.build());
+	}
+
+	/*
+	 * Verify a memory mapped region fits in a single mapping.
+	 */
+	private static void checkRegion(String name,
+									int length,
+									int width) throws RenjinException {
+		if(length < -1)
+			throw new RenjinException("R input \"" + name +
+									"\" mapped length must be -1 or more.");
+		if((long) length * width > RenjinMappingCache.MAX_REGION_SIZE)
+			throw new RenjinException("R input \"" + name + "\" mapped " +
+				"region exceeds the " + RenjinMappingCache.MAX_REGION_SIZE +
+				" byte limit on a single mapping.");
+	}
+
+	/*
+	 * Convert column data to atomic SEXP vector.
+	 */
+	private static SEXP columnSEXP(Object column) throws RenjinException {
+
+		if(column instanceof AtomicVector)
+			return (SEXP) column;
+		else if(column instanceof double[])
+			return new DoubleArrayVector((double[]) column);
+		else if(column instanceof int[])
+			return new IntArrayVector((int[]) column);
+		else if(column instanceof boolean[])
+			return new LogicalArrayVector((boolean[]) column);
+		else if(column instanceof String[])
+			return new StringArrayVector((String[]) column);
+		else
+			throw new RenjinException("R input column type not supported.");
+	}
+
+	/*
+	 * Default compression threshold (bytes). Custom default can
+	 * be set using System property.
+	 */
+	private static final int DEFAULT_COMPRESSION_THRESHOLD =
+		Integer.getInteger("renjin-r-executor-compression-threshold", 1024);
+
+	/**
+	 * Register immutable data for use as a data input on any number
+	 * of executable R tasks, see {@link #inputRef(String, String)}.
+	 * Data is addressed by content, the handle returned is a digest
+	 * of the data, so registering the same data on any JVM yields the
+	 * same handle. A single instance of the data is shared across all
+	 * tasks and engines, the data must not be modified once registered.
+	 * @param data the data to register
+	 * @return handle on the registered data
+	 * @throws RenjinException if data could not be registered
+	 */
+	public static String register(SEXP data) throws RenjinException {
+		try {
+			return RenjinInputRegistry.REGISTRY.register(data);
+		} catch(Exception rex) {
+			throw new RenjinException(rex);
+		}
+	}
+
+	/**
+	 * Remove data previously registered, see {@link #register(SEXP)}.
+	 * Tasks referencing the data that have yet to execute will fail.
+	 * @param handle handle on registered data
+	 * @return true if data was registered on the handle, otherwise false
+	 */
+	public static boolean deregister(String handle) {
+		return RenjinInputRegistry.REGISTRY.deregister(handle);
+	}
+
+	/**
+	 * Install an adapter on an external metrics registry, receiving
+	 * pool and task metrics recorded by the library. Metrics are
+	 * always published on JMX, the adapter is optional. Installing
+	 * an adapter replaces any adapter previously installed.
+	 * @param registry adapter on metrics registry, null to remove
+	 */
+	public static void metrics(RenjinMetricsRegistry registry) {
+		RenjinMetrics.METRICS.install(registry);
+	}
+
 	/*
 	 * Renjin ScriptEngine engine name.
 	 */
@@ -292,4 +889,46 @@ public class Renjin {
 		return scriptEngineManager.getEngineByName(RENJIN_ENGINE);
 	}
 
+	/**
+	 * Wait for warm-up of the pool of Renjin
+	 * {@link javax.script.ScriptEngine} instances used by
+	 * {@link RenjinTask} to complete. The number of engines created
+	 * in parallel during warm-up is set using the
+	 * <i>renjin-r-executor-pool-warmup</i> System property, an optional
+	 * R prelude executed on each engine is identified using the
+	 * <i>renjin-r-executor-pool-prelude</i> System property, objects
+	 * created by the prelude persist across tasks on the engine. The first
+	 * call on this method starts warm-up, so calling it during
+	 * application startup moves engine creation ahead of traffic.
+	 * @param timeout maximum time to wait
+	 * @param unit time unit of the timeout
+	 * @return true if warm-up completed successfully, false if the
+	 * timeout elapsed or warm-up failed, see {@link #poolFailure()}
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public static boolean awaitPoolReady(long timeout, TimeUnit unit)
+									throws InterruptedException {
+		return RenjinManager.POOL.awaitReady(timeout, unit);
+	}
+
+	/**
+	 * Returns warm-up status for the pool of Renjin
+	 * {@link javax.script.ScriptEngine} instances used by
+	 * {@link RenjinTask}, suitable for use by health checks.
+	 * @return true if pool warm-up has completed successfully,
+	 * otherwise false
+	 */
+	public static boolean poolReady() {
+		return RenjinManager.POOL.isReady();
+	}
+
+	/**
+	 * Returns the cause of failure of pool warm-up, for example
+	 * an R prelude that could not be read or failed on execution.
+	 * @return cause of the first warm-up failure, otherwise null
+	 */
+	public static Throwable poolFailure() {
+		return RenjinManager.POOL.warmupFailure();
+	}
+
 }
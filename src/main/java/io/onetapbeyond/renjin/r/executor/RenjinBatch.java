@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Executable batch of R tasks targeting the Renjin interpreter.
+ * Batches are instantiated using the {@link Renjin#batch(List)}
+ * or {@link Renjin#buildBatch(List)} methods. All tasks in a batch
+ * are executed in order on a single Renjin
+ * {@link javax.script.ScriptEngine} checked out of the pool once,
+ * with the engine workspace cleared once after the final task.
+ * As a result, objects created in the workspace by one task in a
+ * batch remain visible to subsequent tasks in the same batch.
+ * An instance of {@link RenjinBatch} is executed as follows:
+ * <pre> 
+ * {@code
+ * List<RenjinResult> rResults = rBatch.execute();
+ * }
+ * </pre>
+ */
+public interface RenjinBatch extends java.io.Serializable {
+
+	/**
+	 * Execute the R tasks in the batch.
+	 * @return the results of the R tasks, in task order
+	 */
+	public List<RenjinResult> execute();
+
+	/**
+	 * Execute the R tasks in the batch asynchronously on the
+	 * shared {@link RenjinService#defaultService()}.
+	 * @return a future completed with the results of the R tasks,
+	 * in task order
+	 */
+	public CompletableFuture<List<RenjinResult>> executeAsync();
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import io.onetapbeyond.renjin.r.executor.codecs.RenjinCodecImpl;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Compression codec applied to serialized SEXP data on
+ * {@link RenjinTask} and {@link RenjinResult}. A codec is
+ * enabled using the {@link Renjin#compress(RenjinCodec, int)}
+ * method:
+ * <pre> 
+ * {@code
+ * RenjinTask rTask = Renjin.R().code(rCode).compress(RenjinCodec.FAST, 4096).build();
+ * }
+ * </pre>
+ * The following codecs are built-in: {@link #NONE}, {@link #GZIP},
+ * {@link #DEFLATE} and {@link #FAST}. Applications can supply their
+ * own codec implementation, for example based on LZ4 or Snappy.
+ * A codec instance is serialized with each {@link RenjinTask} and
+ * {@link RenjinResult} on which it is used, so custom implementations
+ * must be lightweight and available on every JVM.
+ */
+public interface RenjinCodec extends java.io.Serializable {
+
+	/**
+	 * No compression.
+	 */
+	public static final RenjinCodec NONE = RenjinCodecImpl.NONE;
+
+	/**
+	 * GZIP compression, default compression level.
+	 */
+	public static final RenjinCodec GZIP = RenjinCodecImpl.GZIP;
+
+	/**
+	 * Deflate (zlib) compression, default compression level.
+	 */
+	public static final RenjinCodec DEFLATE = RenjinCodecImpl.DEFLATE;
+
+	/**
+	 * Deflate (zlib) compression tuned for speed rather than
+	 * compression ratio.
+	 */
+	public static final RenjinCodec FAST = RenjinCodecImpl.FAST;
+
+	/**
+	 * Encode (compress) data.
+	 * @param data the data to encode
+	 * @return the encoded data
+	 * @throws IOException if data could not be encoded
+	 */
+	public byte[] encode(byte[] data) throws IOException;
+
+	/**
+	 * Decode (decompress) data previously encoded by this codec.
+	 * @param data the encoded data
+	 * @return the decoded data
+	 * @throws IOException if data could not be decoded
+	 */
+	public byte[] decode(byte[] data) throws IOException;
+
+	/**
+	 * Encode (compress) a range of data directly onto the output
+	 * stream provided. The default implementation copies the range
+	 * and delegates to {@link #encode(byte[])}, codecs that stream
+	 * should override it to avoid the intermediate copies.
+	 * @param data the data to encode
+	 * @param offset the offset of the first byte to encode
+	 * @param length the number of bytes to encode
+	 * @param out the stream on which encoded data is written
+	 * @throws IOException if data could not be encoded
+	 */
+	public default void encode(byte[] data,
+							   int offset,
+							   int length,
+							   OutputStream out) throws IOException {
+		out.write(encode(Arrays.copyOfRange(data, offset, offset + length)));
+	}
+
+	/**
+	 * Decode (decompress) a range of data previously encoded by this
+	 * codec. The default implementation copies the range and delegates
+	 * to {@link #decode(byte[])}, codecs that stream should override
+	 * it to avoid the intermediate copy.
+	 * @param data the encoded data
+	 * @param offset the offset of the first encoded byte
+	 * @param length the number of encoded bytes
+	 * @return the decoded data
+	 * @throws IOException if data could not be decoded
+	 */
+	public default byte[] decode(byte[] data,
+								 int offset,
+								 int length) throws IOException {
+		return decode(Arrays.copyOfRange(data, offset, offset + length));
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Adapter on an external metrics registry, such as Micrometer or
+ * Dropwizard Metrics, receiving the metrics recorded by the
+ * renjin-r-executor library. An adapter is installed using the
+ * {@link Renjin#metrics(RenjinMetricsRegistry)} method:
+ * <pre>
+ * {@code
+ * Renjin.metrics(new RenjinMetricsRegistry() {
+ *     public void record(String name, long nanos) {
+ *         registry.timer("renjin." + name).record(nanos, TimeUnit.NANOSECONDS);
+ *     }
+ *     public void increment(String name) {
+ *         registry.counter("renjin." + name).increment();
+ *     }
+ *     public void gauge(String name, LongSupplier value) {
+ *         registry.gauge("renjin." + name, value, LongSupplier::getAsLong);
+ *     }
+ * });
+ * }
+ * </pre>
+ * Metrics are also published, independently of any adapter, on the
+ * platform MBeanServer under the
+ * {@code io.onetapbeyond.renjin.r.executor:type=RenjinMetrics} name.
+ * Implementations are called on task execution threads so must be
+ * thread-safe and must not block.
+ */
+public interface RenjinMetricsRegistry {
+
+	/**
+	 * Record the duration of a single occurrence of a timed phase,
+	 * for example {@code "acquire"}, {@code "eval"} or {@code "task"}.
+	 * @param name phase name
+	 * @param nanos duration in nanoseconds
+	 */
+	public void record(String name, long nanos);
+
+	/**
+	 * Increment a counter, for example {@code "tasks.failed"}.
+	 * @param name counter name
+	 */
+	public void increment(String name);
+
+	/**
+	 * Register a gauge, for example {@code "pool.idle"}, called
+	 * once for each gauge when the adapter is installed.
+	 * @param name gauge name
+	 * @param value supplier of the current gauge value
+	 */
+	public void gauge(String name, LongSupplier value);
+
+}
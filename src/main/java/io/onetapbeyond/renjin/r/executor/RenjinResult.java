@@ -15,6 +15,8 @@
  */
 package io.onetapbeyond.renjin.r.executor;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Map;
 import org.renjin.sexp.SEXP;
 
@@ -50,6 +52,15 @@ public interface RenjinResult extends java.io.Serializable {
 	 */
 	public Throwable cause();
 
+	/**
+	 * Returns true if task execution failed because the task
+	 * timeout elapsed before R code execution completed. On
+	 * timeout, {@link RenjinResult#cause} returns an instance
+	 * of {@link java.util.concurrent.TimeoutException}.
+	 * @return true if the task execution timed out, otherwise false
+	 */
+	public boolean timedOut();
+
 	/**
 	 * Returns approximate time taken (ms) by task execution.
 	 * @return time taken (ms) on task execution success, otherwise zero
@@ -57,15 +68,39 @@ public interface RenjinResult extends java.io.Serializable {
 	public long timeTaken();
 
 	/**
-	 * Returns data inputs passed on task execution.
+	 * Returns breakdown of time spent in each phase of the task
+	 * execution, from engine acquisition through engine cleanup.
+	 * @return phase timings on task execution
+	 */
+	public RenjinTimings timings();
+
+	/**
+	 * Returns data inputs passed on task execution. Empty when
+	 * data input echo is disabled, see {@link Renjin#echoInputs}.
 	 * @return  data inputs passed on task execution.
 	 */
 	public Map<String,Object> input();
 
 	/**
-	 * Returns data outputs generated on task execution.
+	 * Returns data outputs generated on task execution. Null when
+	 * data outputs were streamed, see {@link Renjin#output}.
 	 * @return  data outputs generated on task execution.
 	 */
 	public SEXP output();
 
+	/**
+	 * Writes data outputs generated on task execution on the
+	 * {@link java.io.OutputStream} provided, in serialized form.
+	 * Data outputs held in serialized form are written without
+	 * first being deserialized. The data written can be passed as
+	 * a data input on a subsequent task using
+	 * {@link Renjin#input(String, java.io.InputStream)}. The
+	 * {@link java.io.OutputStream} is not closed.
+	 * @param out stream on which data outputs are written
+	 * @return true if data outputs were written, false if no data
+	 * outputs are available
+	 * @throws IOException if data outputs could not be written
+	 */
+	public boolean output(OutputStream out) throws IOException;
+
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import io.onetapbeyond.renjin.r.executor.manager.RenjinManager;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous executor of {@link RenjinTask} instances. Tasks
+ * submitted on a service are executed on a dedicated thread pool,
+ * by default sized to match the pool of Renjin
+ * {@link javax.script.ScriptEngine} instances used by
+ * {@link RenjinTask}, so callers are not tied up for the duration
+ * of R task execution:
+ * <pre>
+ * {@code
+ * RenjinService rService = RenjinService.create();
+ * CompletableFuture<RenjinResult> rFuture = rService.submit(rTask);
+ * }
+ * </pre>
+ * The {@link RenjinTask#executeAsync} method executes tasks on the
+ * shared {@link #defaultService()} instance.
+ */
+public class RenjinService {
+
+	/*
+	 * Thread pool on which submitted tasks are executed.
+	 */
+	private final ExecutorService executor;
+
+	private RenjinService(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Create an instance of a Renjin task service with a thread
+	 * pool sized to match the pool of Renjin
+	 * {@link javax.script.ScriptEngine} instances.
+	 * @return an instance of a Renjin task service
+	 */
+	public static RenjinService create() {
+		return create(RenjinManager.POOL.maxEngines());
+	}
+
+	/**
+	 * Create an instance of a Renjin task service.
+	 * @param threads size of the thread pool on which tasks
+	 * are executed
+	 * @return an instance of a Renjin task service
+	 */
+	public static RenjinService create(int threads) {
+		AtomicInteger threadCount = new AtomicInteger();
+		return new RenjinService(Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "renjin-r-executor-service-" +
+											threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}));
+	}
+
+	/**
+	 * Create an instance of a Renjin task service on a thread
+	 * pool supplied by the calling application. The lifecycle of
+	 * the supplied {@link java.util.concurrent.ExecutorService}
+	 * remains the responsibility of the calling application.
+	 * @param executor thread pool on which tasks are executed
+	 * @return an instance of a Renjin task service
+	 */
+	public static RenjinService create(ExecutorService executor) {
+		return new RenjinService(executor);
+	}
+
+	/**
+	 * Returns the shared Renjin task service used by
+	 * {@link RenjinTask#executeAsync}.
+	 * @return the shared Renjin task service
+	 */
+	public static RenjinService defaultService() {
+		return DefaultService.INSTANCE;
+	}
+
+	/**
+	 * Submit an R task for asynchronous execution.
+	 * @param task the R task to execute
+	 * @return a future completed with the result of the R task
+	 */
+	public CompletableFuture<RenjinResult> submit(RenjinTask task) {
+		try {
+			return CompletableFuture.supplyAsync(task::execute, executor);
+		} catch(RejectedExecutionException rex) {
+			CompletableFuture<RenjinResult> rejected =
+									new CompletableFuture<RenjinResult>();
+			rejected.completeExceptionally(rex);
+			return rejected;
+		}
+	}
+
+	/**
+	 * Submit a batch of R tasks for asynchronous execution.
+	 * @param batch the batch of R tasks to execute
+	 * @return a future completed with the results of the R tasks,
+	 * in task order
+	 */
+	public CompletableFuture<List<RenjinResult>> submit(RenjinBatch batch) {
+		try {
+			return CompletableFuture.supplyAsync(batch::execute, executor);
+		} catch(RejectedExecutionException rex) {
+			CompletableFuture<List<RenjinResult>> rejected =
+								new CompletableFuture<List<RenjinResult>>();
+			rejected.completeExceptionally(rex);
+			return rejected;
+		}
+	}
+
+	/**
+	 * Shutdown the service. Previously submitted tasks are
+	 * executed, new tasks are rejected.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/*
+	 * Lazily initialized shared service.
+	 */
+	private static class DefaultService {
+		private static final RenjinService INSTANCE = create();
+	}
+
+}
@@ -16,6 +16,7 @@
 package io.onetapbeyond.renjin.r.executor;
 
 import java.io.Reader;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Executable R task targeting the Renjin interpreter. Tasks
@@ -26,6 +27,13 @@ import java.io.Reader;
  * RenjinResult rResult = rTask.execute();
  * }
  * </pre>
+ * An instance of {@link RenjinTask} can also be executed
+ * asynchronously as follows:
+ * <pre> 
+ * {@code
+ * CompletableFuture<RenjinResult> rFuture = rTask.executeAsync();
+ * }
+ * </pre>
  */
 public interface RenjinTask extends java.io.Serializable {
 
@@ -34,4 +42,22 @@ public interface RenjinTask extends java.io.Serializable {
 	 * @return the result of the R task
 	 */
 	public RenjinResult execute();
+
+	/**
+	 * Execute the R task asynchronously on the shared
+	 * {@link RenjinService#defaultService()}.
+	 * @return a future completed with the result of the R task
+	 */
+	public CompletableFuture<RenjinResult> executeAsync();
+
+	/**
+	 * Cancel execution of the R task, if R code is currently being
+	 * executed. When cancelled, the thread executing the R code is
+	 * interrupted and the task result reports a failure caused by
+	 * {@link java.util.concurrent.CancellationException}. A Renjin
+	 * {@link javax.script.ScriptEngine} taken from the pool is
+	 * discarded rather than returned to the pool.
+	 * @return true if execution of the R code was cancelled
+	 */
+	public boolean cancel();
 }
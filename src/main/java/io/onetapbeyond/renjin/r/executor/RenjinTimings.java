@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+/**
+ * Breakdown of time spent (nanoseconds) in each phase of a task
+ * execution, available on {@link RenjinResult#timings}. Phases
+ * that did not apply to an execution, for example engine creation
+ * when an idle engine was taken from the pool, report zero.
+ */
+public interface RenjinTimings extends java.io.Serializable {
+
+	/**
+	 * Returns time spent waiting for an engine from the pool.
+	 * @return acquire wait time (ns)
+	 */
+	public long acquireWait();
+
+	/**
+	 * Returns time spent creating a new engine for the task.
+	 * @return engine creation time (ns)
+	 */
+	public long engineCreate();
+
+	/**
+	 * Returns time spent deserializing data inputs.
+	 * @return input decode time (ns)
+	 */
+	public long inputDecode();
+
+	/**
+	 * Returns time spent binding data inputs on the engine.
+	 * @return bind time (ns)
+	 */
+	public long bind();
+
+	/**
+	 * Returns time spent parsing R code, zero when the parsed
+	 * form of the R code was cached.
+	 * @return parse time (ns)
+	 */
+	public long parse();
+
+	/**
+	 * Returns time spent evaluating R code.
+	 * @return eval time (ns)
+	 */
+	public long eval();
+
+	/**
+	 * Returns time spent serializing data outputs.
+	 * @return output encode time (ns)
+	 */
+	public long outputEncode();
+
+	/**
+	 * Returns time spent clearing the engine following execution.
+	 * @return cleanup time (ns)
+	 */
+	public long cleanup();
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor.codecs;
+
+import io.onetapbeyond.renjin.r.executor.RenjinCodec;
+import java.io.*;
+import java.util.Arrays;
+import java.util.zip.*;
+
+/*
+ * Built-in implementations of {@link RenjinCodec}, based
+ * on the JDK java.util.zip compression support.
+ */
+public enum RenjinCodecImpl implements RenjinCodec {
+
+	NONE {
+		public byte[] encode(byte[] data) {
+			return data;
+		}
+
+		public byte[] decode(byte[] data) {
+			return data;
+		}
+
+		public void encode(byte[] data, int offset, int length,
+							OutputStream out) throws IOException {
+			out.write(data, offset, length);
+		}
+
+		public byte[] decode(byte[] data, int offset, int length) {
+			return Arrays.copyOfRange(data, offset, offset + length);
+		}
+	},
+
+	GZIP {
+		public void encode(byte[] data, int offset, int length,
+							OutputStream out) throws IOException {
+			GZIPOutputStream gzos = new GZIPOutputStream(out, BUFFER_SIZE);
+			gzos.write(data, offset, length);
+			gzos.finish();
+		}
+
+		public byte[] decode(byte[] data, int offset, int length)
+												throws IOException {
+			try(GZIPInputStream gzis = new GZIPInputStream(
+						new ByteArrayInputStream(data, offset, length))) {
+				return drain(gzis, length);
+			}
+		}
+	},
+
+	DEFLATE {
+		public void encode(byte[] data, int offset, int length,
+							OutputStream out) throws IOException {
+			deflate(data, offset, length, Deflater.DEFAULT_COMPRESSION, out);
+		}
+
+		public byte[] decode(byte[] data, int offset, int length)
+												throws IOException {
+			return inflate(data, offset, length);
+		}
+	},
+
+	FAST {
+		public void encode(byte[] data, int offset, int length,
+							OutputStream out) throws IOException {
+			deflate(data, offset, length, Deflater.BEST_SPEED, out);
+		}
+
+		public byte[] decode(byte[] data, int offset, int length)
+												throws IOException {
+			return inflate(data, offset, length);
+		}
+	};
+
+	public byte[] encode(byte[] data) throws IOException {
+		ByteArrayOutputStream baos =
+					new ByteArrayOutputStream(initialSize(data.length));
+		encode(data, 0, data.length, baos);
+		return baos.toByteArray();
+	}
+
+	public byte[] decode(byte[] data) throws IOException {
+		return decode(data, 0, data.length);
+	}
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+	private static int initialSize(int length) {
+		return Math.max(64, length / 2);
+	}
+
+	private static void deflate(byte[] data,
+								int offset,
+								int length,
+								int level,
+								OutputStream out) throws IOException {
+
+		Deflater deflater = new Deflater(level);
+		try {
+			deflater.setInput(data, offset, length);
+			deflater.finish();
+			byte[] buf = new byte[BUFFER_SIZE];
+			while(!deflater.finished()) {
+				out.write(buf, 0, deflater.deflate(buf));
+			}
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static byte[] inflate(byte[] data,
+								  int offset,
+								  int length) throws IOException {
+
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data, offset, length);
+			ByteArrayOutputStream baos =
+						new ByteArrayOutputStream(decodedSize(length));
+			byte[] buf = new byte[BUFFER_SIZE];
+			while(!inflater.finished()) {
+				int inflated = inflater.inflate(buf);
+				if(inflated == 0 && inflater.needsInput())
+					throw new EOFException("Truncated deflate data.");
+				baos.write(buf, 0, inflated);
+			}
+			return baos.toByteArray();
+		} catch(DataFormatException dex) {
+			throw new IOException(dex);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private static byte[] drain(InputStream in,
+								int length) throws IOException {
+		ByteArrayOutputStream baos =
+						new ByteArrayOutputStream(decodedSize(length));
+		byte[] buf = new byte[BUFFER_SIZE];
+		int read;
+		while((read = in.read(buf)) != -1)
+			baos.write(buf, 0, read);
+		return baos.toByteArray();
+	}
+
+	/*
+	 * Initial buffer size for decoded data, estimated from the
+	 * encoded length and capped at the maximum array size.
+	 */
+	private static int decodedSize(int length) {
+		return (int) Math.min(MAX_ARRAY_SIZE, 4L * length);
+	}
+
+}
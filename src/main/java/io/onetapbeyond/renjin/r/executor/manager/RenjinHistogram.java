@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor.manager;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Lock-free latency histogram, recording values in nanoseconds.
+ *
+ * Values are counted in log-linear buckets, eight buckets per power
+ * of two, so percentiles are reported within 12.5% of the recorded
+ * value at a fixed memory cost regardless of the number of values
+ * recorded.
+ */
+class RenjinHistogram {
+
+	private static final int SUB_BUCKETS = 8;
+	private static final int SUB_BITS = 3;
+	private static final int BUCKETS = (63 - SUB_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	void record(long value) {
+		if(value < 0)
+			value = 0;
+		counts.incrementAndGet(bucket(value));
+		count.increment();
+		total.add(value);
+		long current;
+		while(value > (current = max.get()) &&
+						!max.compareAndSet(current, value));
+	}
+
+	long count() {
+		return count.sum();
+	}
+
+	long total() {
+		return total.sum();
+	}
+
+	long max() {
+		return max.get();
+	}
+
+	long mean() {
+		long n = count.sum();
+		return (n == 0) ? 0 : total.sum() / n;
+	}
+
+	/*
+	 * Value at the quantile provided, 0.0 to 1.0, reported as the
+	 * upper bound of the bucket holding the quantile.
+	 */
+	long percentile(double quantile) {
+		long n = count.sum();
+		if(n == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(quantile * n));
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if(seen >= rank)
+				return Math.min(upperBound(i), max.get());
+		}
+		return max.get();
+	}
+
+	void reset() {
+		for(int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.reset();
+		total.reset();
+		max.set(0);
+	}
+
+	static int bucket(long value) {
+		if(value < SUB_BUCKETS)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) ((value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	static long upperBound(int bucket) {
+		if(bucket < SUB_BUCKETS)
+			return bucket;
+		int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+		long width = 1L << (exponent - SUB_BITS);
+		long lower = (SUB_BUCKETS + (bucket % SUB_BUCKETS)) * width;
+		return lower + width - 1;
+	}
+
+}
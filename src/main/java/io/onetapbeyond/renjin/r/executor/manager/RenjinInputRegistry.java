@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor.manager;
+
+import io.onetapbeyond.renjin.r.executor.tasks.RenjinTaskImpl;
+import org.renjin.sexp.SEXP;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+ * RenjinInputRegistry manages a shared registry of immutable SEXP
+ * input data, addressed by content. Each entry is keyed on a handle,
+ * the SHA-256 digest of the serialized form of the data, so the same
+ * data registered on any JVM yields the same handle. Tasks reference
+ * registered data by handle, a single deserialized instance of the
+ * data is then bound on every engine with no per-task serialization
+ * or deserialization.
+ */
+public enum RenjinInputRegistry {
+
+	REGISTRY;
+
+	/*
+	 * Register data, returning the handle on the data. Registering
+	 * data already registered returns the existing handle.
+	 */
+	public String register(SEXP data) {
+
+		byte[] serialized = RenjinTaskImpl.serializeSEXP(data);
+		if(serialized == null)
+			throw new IllegalArgumentException("R input data could not be serialized.");
+
+		String handle = digest(serialized);
+		registry.putIfAbsent(handle, data);
+		return handle;
+	}
+
+	/*
+	 * Retrieve data registered on handle, null if not registered.
+	 */
+	public SEXP lookup(String handle) {
+		return registry.get(handle);
+	}
+
+	public boolean contains(String handle) {
+		return registry.containsKey(handle);
+	}
+
+	/*
+	 * Remove data registered on handle.
+	 */
+	public boolean deregister(String handle) {
+		return registry.remove(handle) != null;
+	}
+
+	/*
+	 * Number of entries currently held in the registry.
+	 */
+	public int size() {
+		return registry.size();
+	}
+
+	private static String digest(byte[] data) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(data);
+			StringBuilder handle = new StringBuilder(hash.length * 2);
+			for(byte b : hash) {
+				handle.append(Character.forDigit((b >> 4) & 0xF, 16))
+					  .append(Character.forDigit(b & 0xF, 16));
+			}
+			return handle.toString();
+		} catch(NoSuchAlgorithmException nex) {
+			throw new IllegalStateException(nex);
+		}
+	}
+
+	private final ConcurrentMap<String,SEXP> registry =
+		new ConcurrentHashMap<String,SEXP>();
+
+}
@@ -16,77 +16,695 @@
 package io.onetapbeyond.renjin.r.executor.manager;
 
 import io.onetapbeyond.renjin.r.executor.Renjin;
+import io.onetapbeyond.renjin.r.executor.RenjinException;
+import io.onetapbeyond.renjin.r.executor.results.RenjinTimingsImpl;
+import static io.onetapbeyond.renjin.r.executor.manager.RenjinMetrics.*;
 import javax.script.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.renjin.script.RenjinScriptEngine;
+import org.renjin.sexp.Environment;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /*
- * RenjinManager manages an elastic pool of Renjin
- * javax.script.ScriptEngine instances.
+ * RenjinManager manages a bounded pool of Renjin
+ * javax.script.ScriptEngine instances. At most
+ * maxEnginesInPool engines are ever created, callers
+ * block (fairly) for an engine when all engines are
+ * in use and fail once the acquire timeout elapses.
+ * On initialization the pool is warmed up in parallel,
+ * optionally running an R prelude on each new engine to
+ * prepare a base environment shared by all tasks on the
+ * engine.
  */
 public enum RenjinManager {
 
 	POOL;
 
 	/*
-	 * Retrieve a Renjin ScriptEngine intance from the pool.
+	 * Retrieve a Renjin ScriptEngine instance from the pool, waiting
+	 * up to the default acquire timeout for an engine to be released.
 	 */
-	public ScriptEngine getEngine() {
+	public ScriptEngine getEngine() throws RenjinException {
+		return getEngine(acquireTimeout, TimeUnit.MILLISECONDS, null);
+	}
 
-		ScriptEngine engine = enginePool.poll();
+	/*
+	 * Retrieve a Renjin ScriptEngine instance from the pool, as
+	 * getEngine(), recording acquire wait and engine creation
+	 * times on the phase timings provided.
+	 */
+	public ScriptEngine getEngine(RenjinTimingsImpl timings)
+										throws RenjinException {
+		return getEngine(acquireTimeout, TimeUnit.MILLISECONDS, timings);
+	}
+
+	/*
+	 * Retrieve a Renjin ScriptEngine instance from the pool, waiting
+	 * up to timeout for an engine to be released. Raises
+	 * RenjinException if the pool is exhausted for the duration
+	 * of the timeout or if a new engine could not be created.
+	 */
+	public ScriptEngine getEngine(long timeout, TimeUnit unit)
+										throws RenjinException {
+		return getEngine(timeout, unit, null);
+	}
+
+	public ScriptEngine getEngine(long timeout,
+								  TimeUnit unit,
+								  RenjinTimingsImpl timings)
+										throws RenjinException {
+
+		long start = System.nanoTime();
+		long deadline = start + unit.toNanos(timeout);
+		ScriptEngine engine = null;
+
+		try {
 
-		if(engine == null) {
 			/*
-			 * Add new Renjin ScriptEngine instance to the pool.
+			 * Each engine checked out of the pool holds a permit,
+			 * bounding the number of engines in use.
 			 */
+			if(!enginePermits.tryAcquire(timeout, unit))
+				throw poolExhausted(timeout, unit);
+
 			try {
-				long bstart = System.currentTimeMillis();
-				engine = Renjin.scriptEngine();
-				long bend = System.currentTimeMillis();
-				long taken = bend-bstart;
-			} catch(Exception eex) {
-				engine = null;
+
+				engine = enginePool.poll();
+
+				if(engine == null) {
+					if(reserveEngine()) {
+						/*
+						 * Add new Renjin ScriptEngine instance to the pool.
+						 */
+						long createStart = acquired(start, timings);
+						engine = createEngine();
+						if(timings != null) {
+							timings.addEngineCreate(
+								System.nanoTime() - createStart);
+						}
+					} else {
+						/*
+						 * All engines exist but are not yet back in the
+						 * pool, wait for the next engine to be released.
+						 */
+						engine = enginePool.poll(
+							deadline - System.nanoTime(),
+											TimeUnit.NANOSECONDS);
+						if(engine == null)
+							throw poolExhausted(timeout, unit);
+						acquired(start, timings);
+					}
+				} else {
+					acquired(start, timings);
+				}
+
+			} finally {
+				if(engine == null)
+					enginePermits.release();
 			}
+
+		} catch(InterruptedException iex) {
+			Thread.currentThread().interrupt();
+			throw new RenjinException(iex);
 		}
+
 		return engine;
 	}
 
+	/*
+	 * Record time spent waiting to acquire an engine, returns
+	 * the time at which the wait ended.
+	 */
+	private long acquired(long start, RenjinTimingsImpl timings) {
+		long end = System.nanoTime();
+		if(timings != null)
+			timings.addAcquireWait(end - start);
+		METRICS.record(ACQUIRE, end - start);
+		return end;
+	}
+
 	/*
 	 * Return a Renjin ScriptEngine instance to the pool.
 	 */
 	public void releaseEngine(ScriptEngine engine) {
-		try {
+		if(engine != null) {
 			/*
-			 * Return engine to pool if elastic pool
-			 * size limit not reached, otherwise drop.
+			 * An engine retired while in use is evicted now its
+			 * replacement is ready. Packages attached or detached
+			 * by task code are undone by restoring the search path
+			 * recorded when the engine was created, so the engine
+			 * is kept rather than leaking state into later tasks.
 			 */
-			if(enginePool.size() < maxEnginesInPool)
-				enginePool.add(engine);
-		} catch(NullPointerException nex) {}
+			EngineState state = engineStates.get(engine);
+			if(state != null && state.retired) {
+				evictEngine(engine);
+				return;
+			}
+			if(state != null) {
+				restoreSearchPath(engine, state);
+				state.uses.incrementAndGet();
+				if(state.dueForRecycling())
+					recycle(engine, state);
+			}
+			enginePool.offer(engine);
+			enginePermits.release();
+		}
+	}
+
+	/*
+	 * Record bytes allocated while executing task code on an engine,
+	 * counted against the allocation budget used by recycling.
+	 */
+	public void recordAllocation(ScriptEngine engine, long bytes) {
+		EngineState state = engineStates.get(engine);
+		if(state != null && bytes > 0)
+			state.allocated.addAndGet(bytes);
+	}
+
+	/*
+	 * Bytes allocated by the current thread, or -1 where the JVM
+	 * does not support thread allocation accounting.
+	 */
+	public static long threadAllocatedBytes() {
+		return Allocation.enabled ?
+			Allocation.threads.getThreadAllocatedBytes(
+				Thread.currentThread().getId()) : -1;
+	}
+
+	/*
+	 * Number of Renjin ScriptEngine instances retired and replaced
+	 * by the recycling policy.
+	 */
+	public long recycledEngines() {
+		return recycled.get();
+	}
+
+	/*
+	 * Discard a Renjin ScriptEngine instance taken from the pool
+	 * rather than returning it to the pool, for example when the
+	 * engine was left executing timed out R code. Frees capacity
+	 * for a replacement engine, so must only be called once the
+	 * engine is no longer evaluating R code. The pool is topped
+	 * back up to its minimum in the background.
+	 */
+	public void evictEngine(ScriptEngine engine) {
+		if(engine != null) {
+			engineStates.remove(engine);
+			engineCount.decrementAndGet();
+			enginePermits.release();
+			METRICS.increment(EVICTED);
+			replenish();
+		}
+	}
+
+	/*
+	 * Total number of Renjin ScriptEngine instances managed
+	 * by the pool, both idle and in use.
+	 */
+	public int engines() {
+		return engineCount.get();
+	}
+
+	/*
+	 * Maximum number of Renjin ScriptEngine instances
+	 * managed by the pool.
+	 */
+	public int maxEngines() {
+		return maxEnginesInPool;
+	}
+
+	/*
+	 * Number of Renjin ScriptEngine instances idle in the pool.
+	 */
+	public int idleEngines() {
+		return enginePool.size();
+	}
+
+	/*
+	 * Wait for pool warm-up to complete, returns true if warm-up
+	 * completed successfully before the timeout elapsed, false if
+	 * the timeout elapsed or if any warm-up engine failed.
+	 */
+	public boolean awaitReady(long timeout, TimeUnit unit)
+									throws InterruptedException {
+		return warmupLatch.await(timeout, unit) && (warmupFailure == null);
+	}
+
+	/*
+	 * Returns true once pool warm-up has completed successfully.
+	 */
+	public boolean isReady() {
+		return (warmupLatch.getCount() == 0) && (warmupFailure == null);
+	}
+
+	/*
+	 * Returns the cause of the first warm-up engine failure,
+	 * otherwise null.
+	 */
+	public Throwable warmupFailure() {
+		return warmupFailure;
+	}
+
+	/*
+	 * Reserve capacity for a new engine, fails if the
+	 * pool size limit has been reached.
+	 */
+	private boolean reserveEngine() {
+		while(true) {
+			int count = engineCount.get();
+			if(count >= maxEnginesInPool)
+				return false;
+			if(engineCount.compareAndSet(count, count + 1))
+				return true;
+		}
+	}
+
+	/*
+	 * Create a new Renjin ScriptEngine instance on
+	 * capacity previously reserved by reserveEngine().
+	 */
+	private ScriptEngine createEngine() throws RenjinException {
+
+		long start = System.nanoTime();
+		try {
+			ScriptEngine engine = newEngine();
+			METRICS.record(CREATE, System.nanoTime() - start);
+			return engine;
+		} catch(RenjinException rex) {
+			METRICS.increment(CREATE_FAILED);
+			throw rex;
+		}
+	}
+
+	private ScriptEngine newEngine() throws RenjinException {
+
+		/*
+		 * Engines are never created without the configured prelude.
+		 */
+		if(preludeFailure != null) {
+			engineCount.decrementAndGet();
+			throw preludeFailure;
+		}
+
+		ScriptEngine engine = null;
+		try {
+			engine = Renjin.scriptEngine();
+		} catch(Exception eex) {
+			engine = null;
+		}
+
+		if(engine == null) {
+			engineCount.decrementAndGet();
+			throw new RenjinException("Renjin ScriptEngine creation failed.");
+		}
+
+		/*
+		 * Run R prelude, if any, on the new engine and move the
+		 * resulting bindings into the base environment.
+		 */
+		if(prelude != null) {
+			try {
+				engine.eval(prelude);
+				engine.eval(RENJIN_BASE);
+			} catch(Exception pex) {
+				engineCount.decrementAndGet();
+				throw new RenjinException(pex);
+			}
+		}
+		engineStates.put(engine, new EngineState(
+			(engine instanceof RenjinScriptEngine) ?
+								searchPath(engine) : null));
+		return engine;
+	}
+
+	/*
+	 * Retire an engine due for recycling. A replacement engine is
+	 * created in the background while the retiring engine continues
+	 * to serve tasks, once the replacement joins the pool the retiring
+	 * engine is dropped, immediately if idle, otherwise on release.
+	 * The pool briefly holds one engine above the size limit while
+	 * the replacement is created, the number of engines in use remains
+	 * bounded by the pool permits.
+	 */
+	private void recycle(ScriptEngine engine, EngineState state) {
+
+		synchronized(state) {
+			if(state.retiring)
+				return;
+			state.retiring = true;
+		}
+
+		Recycler.INSTANCE.execute(() -> {
+			try {
+				engineCount.incrementAndGet();
+				ScriptEngine replacement = createEngine();
+				state.retired = true;
+				if(enginePool.remove(engine)) {
+					engineStates.remove(engine);
+					engineCount.decrementAndGet();
+				}
+				enginePool.offer(replacement);
+				recycled.incrementAndGet();
+			} catch(RenjinException rex) {
+				/*
+				 * Replacement failed, retry on a subsequent release.
+				 */
+				synchronized(state) {
+					state.retiring = false;
+				}
+			}
+		});
+	}
+
+	/*
+	 * Create engines in the background until the pool again holds
+	 * minIdleEnginesInPool engines, replacing engines evicted from
+	 * the pool. Retired engines need no replenishment as each is
+	 * dropped only once its replacement has joined the pool.
+	 */
+	private void replenish() {
+
+		if(engineCount.get() >= minIdleEnginesInPool)
+			return;
+
+		Recycler.INSTANCE.execute(() -> {
+			try {
+				while(engineCount.get() < minIdleEnginesInPool &&
+											reserveEngine()) {
+					enginePool.offer(createEngine());
+				}
+			} catch(RenjinException rex) {
+				log.warn("Renjin engine pool replenishment failed.", rex);
+			}
+		});
+	}
+
+	private synchronized void warmupFailed(RenjinException rex) {
+		if(warmupFailure == null) {
+			log.error("Renjin engine pool warm-up failed.", rex);
+			warmupFailure = rex;
+		}
+	}
+
+	/*
+	 * Relink the recorded chain of environments below the global
+	 * environment, dropping any attached by task code at any
+	 * position and reinstating any detached.
+	 */
+	private static void restoreSearchPath(ScriptEngine engine,
+											EngineState state) {
+		if(state.searchPath == null)
+			return;
+		Environment env = globalEnvironment(engine);
+		for(Environment next : state.searchPath) {
+			if(env.getParent() != next)
+				env.setParent(next);
+			env = next;
+		}
+	}
+
+	private static List<Environment> searchPath(ScriptEngine engine) {
+		List<Environment> path = new ArrayList<Environment>();
+		Environment env = globalEnvironment(engine).getParent();
+		while(env != null && env != Environment.EMPTY &&
+								path.size() < SEARCH_PATH_LIMIT) {
+			path.add(env);
+			env = env.getParent();
+		}
+		return path;
+	}
+
+	private static Environment globalEnvironment(ScriptEngine engine) {
+		return ((RenjinScriptEngine) engine).getTopLevelContext()
+									.getGlobalEnvironment();
+	}
+
+	private RenjinException poolExhausted(long timeout, TimeUnit unit) {
+		METRICS.increment(ACQUIRE_TIMEOUT);
+		return new RenjinException("Renjin engine pool exhausted, " +
+			"no engine available within " + unit.toMillis(timeout) + "ms.");
 	}
 
 
 	/*
-	 * Renjin ScriptEngine elastic pool, unbounded.
+	 * Renjin ScriptEngine pool, holds idle engines only.
 	 */
 	private LinkedBlockingQueue<ScriptEngine> enginePool;
 
 	/*
-	 * Renjin ScriptEngine pool size limit. Custom limit
-	 * can be set using System property, otherwise defaults.
+	 * Renjin ScriptEngine pool size limit, a hard limit on the
+	 * number of engines created. Custom limit can be set using
+	 * System property, otherwise defaults.
 	 */
-	private long maxEnginesInPool =
-		Long.getLong("renjin-r-executor-pool-size-limit", 12);
+	private int maxEnginesInPool = Math.max(1,
+		Integer.getInteger("renjin-r-executor-pool-size-limit", 12));
 
 	/*
-	 * Initialize Renjin ScriptEngine elastic pool with
-	 * a single ScriptEngine instance.
+	 * Minimum number of idle Renjin ScriptEngine instances created
+	 * when the pool is initialized, and restored in the background
+	 * after engines are evicted. Custom minimum can be set using
+	 * System property, otherwise defaults.
+	 */
+	private int minIdleEnginesInPool = Math.min(maxEnginesInPool,
+		Integer.getInteger("renjin-r-executor-pool-min-idle", 1));
+
+	/*
+	 * Time (ms) a caller waits for an engine when all engines
+	 * are in use. Custom timeout can be set using System
+	 * property, otherwise defaults.
+	 */
+	private long acquireTimeout =
+		Long.getLong("renjin-r-executor-pool-acquire-timeout", 30000);
+
+	/*
+	 * Number of Renjin ScriptEngine instances created in parallel
+	 * when the pool is initialized. Custom count can be set using
+	 * System property, otherwise defaults to minIdleEnginesInPool.
+	 */
+	private int warmupEnginesInPool = Math.min(maxEnginesInPool,
+		Integer.getInteger("renjin-r-executor-pool-warmup",
+											minIdleEnginesInPool));
+
+	/*
+	 * R prelude run on each new Renjin ScriptEngine instance, such
+	 * as library(...) calls, helper functions or fitted models.
+	 * Loaded from the R script file identified by System property,
+	 * otherwise no prelude. Workspace objects created by the prelude
+	 * are moved into the base environment, so they survive the
+	 * cleanup that follows each task execution.
+	 */
+	private String prelude;
+
+	/*
+	 * Raised on every engine creation when the configured R prelude
+	 * could not be read.
+	 */
+	private RenjinException preludeFailure;
+
+	/*
+	 * Moves all bindings on the global environment into the base
+	 * environment, attached on the search path directly below the
+	 * global environment. Task code resolves base bindings through
+	 * the search path, while cleanup of the global environment leaves
+	 * them untouched. Base bindings masked by task code are restored
+	 * once the masking binding is removed.
+	 */
+	private static final String RENJIN_BASE =
+		"local({\n" +
+		"  base <- attach(NULL, name = \"renjin-r-executor-base\")\n" +
+		"  for(name in ls(globalenv(), all.names = TRUE))\n" +
+		"    assign(name, get(name, envir = globalenv()), envir = base)\n" +
+		"  rm(list = ls(globalenv(), all.names = TRUE), envir = globalenv())\n" +
+		"})";
+
+	/*
+	 * Guards the walk of the search path recorded for each engine.
+	 */
+	private static final int SEARCH_PATH_LIMIT = 1024;
+
+	/*
+	 * Released once all warm-up engines have been created or have
+	 * failed, warmupFailure holds the cause of the first failure.
+	 */
+	private CountDownLatch warmupLatch;
+	private volatile Throwable warmupFailure;
+
+	private final Logger log = LoggerFactory.getLogger(RenjinManager.class);
+
+	/*
+	 * State of each Renjin ScriptEngine instance created by the pool.
+	 */
+	private final Map<ScriptEngine,EngineState> engineStates =
+			new ConcurrentHashMap<ScriptEngine,EngineState>();
+
+	/*
+	 * Engine recycling policy. An engine is retired and replaced once
+	 * it has executed maxEngineUses tasks, once it is older than
+	 * maxEngineAge (ms), or once the bytes allocated executing task
+	 * code on the engine exceed maxEngineAllocation. The allocation
+	 * budget counts every byte allocated, short-lived garbage included,
+	 * so bounds the work done on an engine, not the state it retains.
+	 * Custom limits can be set using System properties, otherwise
+	 * defaults to zero, no limit.
+	 */
+	private final long maxEngineUses =
+		Long.getLong("renjin-r-executor-pool-recycle-uses", 0);
+	private final long maxEngineAge =
+		Long.getLong("renjin-r-executor-pool-recycle-age", 0);
+	private final long maxEngineAllocation =
+		Long.getLong("renjin-r-executor-pool-recycle-allocation", 0);
+
+	private final AtomicLong recycled = new AtomicLong();
+
+	/*
+	 * Per engine state, tracking search path and recycling status.
+	 */
+	private class EngineState {
+
+		private final List<Environment> searchPath;
+		private final long created = System.nanoTime();
+		private final AtomicLong uses = new AtomicLong();
+		private final AtomicLong allocated = new AtomicLong();
+		private boolean retiring;
+		private volatile boolean retired;
+
+		EngineState(List<Environment> searchPath) {
+			this.searchPath = searchPath;
+		}
+
+		boolean dueForRecycling() {
+			return (maxEngineUses > 0 && uses.get() >= maxEngineUses) ||
+				   (maxEngineAge > 0 && TimeUnit.NANOSECONDS.toMillis(
+						System.nanoTime() - created) >= maxEngineAge) ||
+				   (maxEngineAllocation > 0 &&
+						allocated.get() >= maxEngineAllocation);
+		}
+	}
+
+	/*
+	 * Thread allocation accounting, available on HotSpot JVMs.
+	 */
+	private static class Allocation {
+
+		private static final com.sun.management.ThreadMXBean threads;
+		private static final boolean enabled;
+
+		static {
+			java.lang.management.ThreadMXBean bean =
+				ManagementFactory.getThreadMXBean();
+			boolean supported = false;
+			if(bean instanceof com.sun.management.ThreadMXBean) {
+				threads = (com.sun.management.ThreadMXBean) bean;
+				try {
+					supported =
+						threads.isThreadAllocatedMemorySupported() &&
+						threads.isThreadAllocatedMemoryEnabled();
+				} catch(UnsupportedOperationException uex) {}
+			} else {
+				threads = null;
+			}
+			enabled = supported;
+		}
+	}
+
+	/*
+	 * Background creator of replacement and replenishment engines.
+	 */
+	private static class Recycler {
+
+		private static final ExecutorService INSTANCE =
+			Executors.newSingleThreadExecutor(r -> {
+				Thread t = new Thread(r, "renjin-r-executor-recycler");
+				t.setDaemon(true);
+				return t;
+			});
+	}
+
+	/*
+	 * Fair permits, one per engine, handed out in arrival order.
+	 */
+	private Semaphore enginePermits;
+
+	/*
+	 * Number of Renjin ScriptEngine instances created by the pool.
+	 */
+	private AtomicInteger engineCount;
+
+	/*
+	 * Initialize Renjin ScriptEngine pool, creating the warm-up
+	 * ScriptEngine instances in parallel in the background.
 	 */
 	private RenjinManager() {
+
 		enginePool = new LinkedBlockingQueue<ScriptEngine>();
-		try {
-			ScriptEngine seedEngine = Renjin.scriptEngine();
-			enginePool.put(seedEngine);
-		} catch(InterruptedException iex) {}
+		enginePermits = new Semaphore(maxEnginesInPool, true);
+		engineCount = new AtomicInteger();
+		warmupLatch = new CountDownLatch(warmupEnginesInPool);
+
+		String preludeFile =
+			System.getProperty("renjin-r-executor-pool-prelude");
+		if(preludeFile != null) {
+			try {
+				prelude = new String(Files.readAllBytes(
+					Paths.get(preludeFile)), StandardCharsets.UTF_8);
+			} catch(Exception pex) {
+				log.error("Renjin engine pool R prelude {} could not be read, " +
+					"engines will not be created.", preludeFile, pex);
+				preludeFailure = new RenjinException(
+					"Renjin engine pool R prelude " + preludeFile +
+					" could not be read: " + pex);
+			}
+		}
+
+		if(warmupEnginesInPool > 0) {
+
+			ExecutorService warmup = Executors.newFixedThreadPool(
+				Math.min(warmupEnginesInPool,
+					Runtime.getRuntime().availableProcessors()),
+				new ThreadFactory() {
+					private final AtomicInteger threads = new AtomicInteger();
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r,
+							"renjin-r-executor-warmup-" +
+										threads.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+
+			for(int i = 0; i < warmupEnginesInPool; i++) {
+				warmup.execute(new Runnable() {
+					public void run() {
+						try {
+							if(reserveEngine())
+								enginePool.offer(createEngine());
+						} catch(RenjinException rex) {
+							warmupFailed(rex);
+						} finally {
+							warmupLatch.countDown();
+						}
+					}
+				});
+			}
+			warmup.shutdown();
+		}
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor.manager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * RenjinMappingCache manages a bounded, shared cache of read-only
+ * memory mapped file regions. Entries are keyed on file path, offset
+ * and size so tasks binding the same file region share one mapping,
+ * and so one off-heap copy of the data, across all engines. As the
+ * mappings live off-heap, heap pressure says nothing about them, so
+ * the cache is bounded explicitly on both entry count and total
+ * mapped bytes. Least recently used entries are evicted once either
+ * limit is reached, an evicted mapping is released once no bound R
+ * vector still uses it.
+ */
+public enum RenjinMappingCache {
+
+	MAPPINGS;
+
+	/*
+	 * Maximum size (bytes) of a single mapped region, a limit
+	 * imposed by java.nio MappedByteBuffer.
+	 */
+	public static final long MAX_REGION_SIZE = Integer.MAX_VALUE;
+
+	/*
+	 * Retrieve a read-only mapping of the file region, mapping
+	 * and caching the region on a cache miss. A size of -1 maps
+	 * from offset to the end of the file. The buffer returned is
+	 * shared, callers must use absolute access or a duplicate.
+	 */
+	public ByteBuffer map(String file,
+						  long offset,
+						  long size) throws IOException {
+
+		String key = file + ':' + offset + ':' + size;
+		ByteBuffer mapping = null;
+
+		synchronized(mappings) {
+			mapping = mappings.get(key);
+		}
+
+		if(mapping != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+			/*
+			 * Map outside of the cache lock, concurrent misses
+			 * on the same region simply race to populate the cache.
+			 */
+			Path path = Paths.get(file);
+			try(FileChannel channel =
+					FileChannel.open(path, StandardOpenOption.READ)) {
+				long regionSize = (size < 0) ? channel.size() - offset : size;
+				if(offset < 0 || regionSize < 0 ||
+					offset + regionSize > channel.size())
+					throw new IOException("Mapped region [" + offset + ", " +
+						(offset + regionSize) + ") outside file " + file + ".");
+				if(regionSize > MAX_REGION_SIZE)
+					throw new IOException("Mapped region on file " + file +
+						" is " + regionSize + " bytes, exceeds the " +
+						MAX_REGION_SIZE + " byte limit on a single mapping. " +
+						"Bind the file as smaller regions.");
+				mapping = channel.map(FileChannel.MapMode.READ_ONLY,
+									  offset, regionSize);
+			}
+			if(maxEntriesInCache > 0)
+				cache(key, mapping);
+		}
+		return mapping;
+	}
+
+	/*
+	 * Number of cache lookups satisfied by the cache.
+	 */
+	public long hits() {
+		return hits.get();
+	}
+
+	/*
+	 * Number of cache lookups that required a file mapping.
+	 */
+	public long misses() {
+		return misses.get();
+	}
+
+	/*
+	 * Number of entries evicted due to cache limits.
+	 */
+	public long evictions() {
+		return evictions.get();
+	}
+
+	/*
+	 * Number of entries currently held in the cache.
+	 */
+	public int size() {
+		synchronized(mappings) {
+			return mappings.size();
+		}
+	}
+
+	/*
+	 * Total size (bytes) of the mappings currently held in the cache.
+	 */
+	public long mappedBytes() {
+		synchronized(mappings) {
+			return mappedBytes;
+		}
+	}
+
+	/*
+	 * Discard all entries currently held in the cache. Mappings
+	 * in use on bound R vectors remain valid.
+	 */
+	public void clear() {
+		synchronized(mappings) {
+			mappings.clear();
+			mappedBytes = 0;
+		}
+	}
+
+	/*
+	 * Cache mapping, evicting least recently used entries while
+	 * either cache limit is exceeded. A mapping larger than the
+	 * mapped bytes limit is returned to the caller but not cached.
+	 */
+	private void cache(String key, ByteBuffer mapping) {
+		synchronized(mappings) {
+			ByteBuffer prior = mappings.put(key, mapping);
+			if(prior != null)
+				mappedBytes -= prior.capacity();
+			mappedBytes += mapping.capacity();
+
+			Iterator<ByteBuffer> eldest = mappings.values().iterator();
+			while((mappings.size() > maxEntriesInCache ||
+						mappedBytes > maxBytesInCache) && eldest.hasNext()) {
+				mappedBytes -= eldest.next().capacity();
+				eldest.remove();
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	/*
+	 * Mapping cache limits, on entry count and on total mapped
+	 * bytes. Custom limits can be set using System properties,
+	 * otherwise defaults. An entry limit of zero disables caching.
+	 */
+	private final int maxEntriesInCache =
+		Integer.getInteger("renjin-r-executor-mapping-cache-size", 64);
+
+	private final long maxBytesInCache =
+		Long.getLong("renjin-r-executor-mapping-cache-bytes", 1L << 32);
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/*
+	 * Mapped file regions, in least recently used access order,
+	 * with the total mapped bytes guarded by the map.
+	 */
+	private final Map<String,ByteBuffer> mappings =
+		new LinkedHashMap<String,ByteBuffer>(16, 0.75f, true);
+
+	private long mappedBytes;
+
+}
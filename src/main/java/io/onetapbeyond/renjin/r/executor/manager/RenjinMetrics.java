@@ -0,0 +1,216 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor.manager;
+
+import io.onetapbeyond.renjin.r.executor.RenjinMetricsRegistry;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import javax.management.ObjectName;
+
+/*
+ * RenjinMetrics records pool and task metrics: latency histograms
+ * per execution phase, counters on engine lifecycle and task outcome
+ * events, and gauges on the pool. Metrics are published on the
+ * platform MBeanServer and, if installed, forwarded to an external
+ * RenjinMetricsRegistry. JMX registration can be disabled using
+ * System property renjin-r-executor-jmx=false.
+ */
+public enum RenjinMetrics implements RenjinMetricsMXBean {
+
+	METRICS;
+
+	/*
+	 * Timed phases.
+	 */
+	public static final String ACQUIRE = "acquire";
+	public static final String CREATE = "create";
+	public static final String DECODE = "decode";
+	public static final String BIND = "bind";
+	public static final String PARSE = "parse";
+	public static final String EVAL = "eval";
+	public static final String ENCODE = "encode";
+	public static final String CLEANUP = "cleanup";
+	public static final String TASK = "task";
+
+	/*
+	 * Counted events.
+	 */
+	public static final String CREATE_FAILED = "engines.create.failed";
+	public static final String EVICTED = "engines.evicted";
+	public static final String ACQUIRE_TIMEOUT = "engines.acquire.timeout";
+	public static final String SUCCEEDED = "tasks.succeeded";
+	public static final String FAILED = "tasks.failed";
+	public static final String TIMED_OUT = "tasks.timedout";
+
+	public static final String OBJECT_NAME =
+		"io.onetapbeyond.renjin.r.executor:type=RenjinMetrics";
+
+	private final Map<String,RenjinHistogram> latencies =
+			new ConcurrentHashMap<String,RenjinHistogram>();
+	private final Map<String,LongAdder> counters =
+			new ConcurrentHashMap<String,LongAdder>();
+
+	private volatile RenjinMetricsRegistry registry;
+
+	RenjinMetrics() {
+		if(!"false".equals(System.getProperty("renjin-r-executor-jmx"))) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(
+									this, new ObjectName(OBJECT_NAME));
+			} catch(Exception jex) {
+				/*
+				 * Already registered, for example by another class
+				 * loader, or JMX unavailable. Metrics still recorded.
+				 */
+			}
+		}
+	}
+
+	/*
+	 * Install adapter on an external metrics registry, replacing
+	 * any adapter previously installed. Null removes the adapter.
+	 */
+	public void install(RenjinMetricsRegistry registry) {
+		if(registry != null) {
+			registry.gauge("pool.size", () -> getPoolSize());
+			registry.gauge("pool.max", () -> getMaxPoolSize());
+			registry.gauge("pool.idle", () -> getIdleEngines());
+			registry.gauge("pool.busy", () -> getBusyEngines());
+		}
+		this.registry = registry;
+	}
+
+	public void record(String phase, long nanos) {
+		latencies.computeIfAbsent(phase,
+						p -> new RenjinHistogram()).record(nanos);
+		RenjinMetricsRegistry adapter = registry;
+		if(adapter != null)
+			adapter.record(phase, nanos);
+	}
+
+	public void increment(String counter) {
+		counters.computeIfAbsent(counter, c -> new LongAdder()).increment();
+		RenjinMetricsRegistry adapter = registry;
+		if(adapter != null)
+			adapter.increment(counter);
+	}
+
+	public long count(String counter) {
+		LongAdder adder = counters.get(counter);
+		return (adder == null) ? 0 : adder.sum();
+	}
+
+	public long latencyCount(String phase) {
+		RenjinHistogram histogram = latencies.get(phase);
+		return (histogram == null) ? 0 : histogram.count();
+	}
+
+	public long percentile(String phase, double quantile) {
+		RenjinHistogram histogram = latencies.get(phase);
+		return (histogram == null) ? 0 : histogram.percentile(quantile);
+	}
+
+	public int getPoolSize() {
+		return RenjinManager.POOL.engines();
+	}
+
+	public int getMaxPoolSize() {
+		return RenjinManager.POOL.maxEngines();
+	}
+
+	public int getIdleEngines() {
+		return RenjinManager.POOL.idleEngines();
+	}
+
+	public int getBusyEngines() {
+		return Math.max(0, getPoolSize() - getIdleEngines());
+	}
+
+	public long getEnginesCreated() {
+		return latencyCount(CREATE);
+	}
+
+	public long getEngineCreationFailures() {
+		return count(CREATE_FAILED);
+	}
+
+	public long getEnginesEvicted() {
+		return count(EVICTED);
+	}
+
+	public long getEnginesRecycled() {
+		return RenjinManager.POOL.recycledEngines();
+	}
+
+	public long getAcquireTimeouts() {
+		return count(ACQUIRE_TIMEOUT);
+	}
+
+	public long getTasksSucceeded() {
+		return count(SUCCEEDED);
+	}
+
+	public long getTasksFailed() {
+		return count(FAILED);
+	}
+
+	public long getTasksTimedOut() {
+		return count(TIMED_OUT);
+	}
+
+	public Map<String,Long> getLatencyCount() {
+		return latencies(RenjinHistogram::count);
+	}
+
+	public Map<String,Long> getLatencyMean() {
+		return latencies(RenjinHistogram::mean);
+	}
+
+	public Map<String,Long> getLatencyP50() {
+		return latencies(h -> h.percentile(0.5));
+	}
+
+	public Map<String,Long> getLatencyP99() {
+		return latencies(h -> h.percentile(0.99));
+	}
+
+	public Map<String,Long> getLatencyMax() {
+		return latencies(RenjinHistogram::max);
+	}
+
+	public void reset() {
+		for(RenjinHistogram histogram : latencies.values()) {
+			histogram.reset();
+		}
+		for(LongAdder adder : counters.values()) {
+			adder.reset();
+		}
+	}
+
+	private Map<String,Long> latencies(
+						ToLongFunction<RenjinHistogram> statistic) {
+		Map<String,Long> values = new TreeMap<String,Long>();
+		for(Map.Entry<String,RenjinHistogram> pair : latencies.entrySet()) {
+			values.put(pair.getKey(), statistic.applyAsLong(pair.getValue()));
+		}
+		return values;
+	}
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor.manager;
+
+import java.util.Map;
+
+/*
+ * JMX management interface on renjin-r-executor metrics. Latencies
+ * are reported in nanoseconds, keyed by phase name.
+ */
+public interface RenjinMetricsMXBean {
+
+	public int getPoolSize();
+	public int getMaxPoolSize();
+	public int getIdleEngines();
+	public int getBusyEngines();
+
+	public long getEnginesCreated();
+	public long getEngineCreationFailures();
+	public long getEnginesEvicted();
+	public long getEnginesRecycled();
+	public long getAcquireTimeouts();
+
+	public long getTasksSucceeded();
+	public long getTasksFailed();
+	public long getTasksTimedOut();
+
+	public Map<String,Long> getLatencyCount();
+	public Map<String,Long> getLatencyMean();
+	public Map<String,Long> getLatencyP50();
+	public Map<String,Long> getLatencyP99();
+	public Map<String,Long> getLatencyMax();
+
+	public void reset();
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor.manager;
+
+import org.renjin.parser.RParser;
+import org.renjin.sexp.ExpressionVector;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * RenjinScriptCache manages a bounded, shared cache of parsed
+ * R code. Entries are keyed on the R code and hold the Renjin
+ * ExpressionVector generated by the parser so tasks built from
+ * identical R code are parsed once, not once per execution.
+ * Least recently used entries are evicted once the cache size
+ * limit is reached.
+ */
+public enum RenjinScriptCache {
+
+	CACHE;
+
+	/*
+	 * Retrieve the parsed form of the R code, parsing and
+	 * caching the R code on a cache miss.
+	 */
+	public ExpressionVector parse(String code) {
+
+		ExpressionVector expressions = null;
+
+		synchronized(parsedCode) {
+			expressions = parsedCode.get(code);
+		}
+
+		if(expressions != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+			/*
+			 * Parse outside of the cache lock, concurrent misses
+			 * on identical R code simply race to populate the cache.
+			 */
+			expressions = RParser.parseSource(code + "\n");
+			if(maxEntriesInCache > 0) {
+				synchronized(parsedCode) {
+					parsedCode.put(code, expressions);
+				}
+			}
+		}
+		return expressions;
+	}
+
+	/*
+	 * Number of cache lookups satisfied by the cache.
+	 */
+	public long hits() {
+		return hits.get();
+	}
+
+	/*
+	 * Number of cache lookups that required R code parsing.
+	 */
+	public long misses() {
+		return misses.get();
+	}
+
+	/*
+	 * Number of entries evicted due to cache size limit.
+	 */
+	public long evictions() {
+		return evictions.get();
+	}
+
+	/*
+	 * Number of entries currently held in the cache.
+	 */
+	public int size() {
+		synchronized(parsedCode) {
+			return parsedCode.size();
+		}
+	}
+
+	/*
+	 * Discard all entries currently held in the cache.
+	 */
+	public void clear() {
+		synchronized(parsedCode) {
+			parsedCode.clear();
+		}
+	}
+
+	/*
+	 * Parsed R code cache size limit. Custom limit can be set
+	 * using System property, otherwise defaults. A limit of
+	 * zero disables caching.
+	 */
+	private final int maxEntriesInCache =
+		Integer.getInteger("renjin-r-executor-script-cache-size", 256);
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/*
+	 * Parsed R code, in least recently used access order.
+	 */
+	private final Map<String,ExpressionVector> parsedCode =
+		new LinkedHashMap<String,ExpressionVector>(16, 0.75f, true) {
+
+			protected boolean removeEldestEntry(
+				Map.Entry<String,ExpressionVector> eldest) {
+
+				if(size() > maxEntriesInCache) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+
+}
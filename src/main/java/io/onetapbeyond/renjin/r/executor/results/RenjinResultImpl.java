@@ -4,7 +4,7 @@
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
  * You may obtain a copy of the License at
- * 
+ *
  * http://www.apache.org/licenses/LICENSE-2.0
  *
  * Unless required by applicable law or agreed to in writing, software
@@ -17,6 +17,7 @@ package io.onetapbeyond.renjin.r.executor.results;
 
 import static io.onetapbeyond.renjin.r.executor.tasks.RenjinTaskImpl.*;
 import io.onetapbeyond.renjin.r.executor.*;
+import io.onetapbeyond.renjin.r.executor.tasks.RenjinWireFormat;
 import org.renjin.sexp.SEXP;
 import org.renjin.primitives.io.serialization.*;
 import java.io.*;
@@ -25,92 +26,277 @@ import java.util.HashMap;
 
 /*
  * Concrete implementation of Renjin executor task result.
- * 
+ *
  * Instances of {@link RenjinResult} as returned by the
- * {@link RenjinTask#execute} method.
+ * {@link RenjinTask#execute} method. Serialized using
+ * the compact {@link RenjinWireFormat}.
  */
-public class RenjinResultImpl implements RenjinResult {
+public class RenjinResultImpl implements RenjinResult, Externalizable {
 
 	/*
-	 * Generated SUID for RenjinResult, generated using serialver. 
+	 * Generated SUID for RenjinResult, generated using serialver.
 	 */
 	private static final long serialVersionUID = 3871346233619381871L;
 
 	/*
-	 * Map holding {@link RenjinTask} result data.
+	 * RenjinResult flags.
+	 */
+	public static final int SUCCESS = 1;
+	public static final int TIMED_OUT = 2;
+	public static final int OUTPUT_SERIALIZED = 4;
+	public static final int INPUT_SERIALIZED = 8;
+	public static final int RELEASE_SERIALIZED = 16;
+	public static final int COMPRESSED = 32;
+	public static final int TIMED = 64;
+
+	private int flags;
+	private long timeTaken;
+	private RenjinTimingsImpl timings;
+	private String error;
+	private Throwable cause;
+
+	/*
+	 * {@link RenjinTask} output data, in serialized form if
+	 * OUTPUT_SERIALIZED, otherwise in native SEXP encoded form.
+	 */
+	private Object output;
+
+	/*
+	 * {@link RenjinTask} input data, SEXP input data in native SEXP
+	 * encoded form or, if INPUT_SERIALIZED, in serialized form once
+	 * the result has been serialized. Null if inputs are not echoed
+	 * on the result.
+	 */
+	private Map<String,Object> sexpInputs;
+	private Map<String,Object> primInputs;
+
+	/*
+	 * Codec applied to serialized data if COMPRESSED, and the
+	 * threshold used when re-serializing released data.
+	 */
+	private RenjinCodec codec;
+	private int compressionThreshold;
+
+	/*
+	 * Deserialized output and input data, materialized on first
+	 * access. Transient, so never serialized with the result.
 	 */
-	private Map<String,Object> resultMap;
+	private transient SEXP outputView;
+	private transient Map<String,Object> inputView;
 
-	public RenjinResultImpl(Map<String,Object> resultMap) {
-		this.resultMap = resultMap;
+	/*
+	 * Required by Externalizable, used only on deserialization.
+	 */
+	public RenjinResultImpl() {}
+
+	public RenjinResultImpl(int flags,
+							Object output,
+							long timeTaken,
+							String error,
+							Throwable cause,
+							Map<String,Object> sexpInputs,
+							Map<String,Object> primInputs,
+							RenjinCodec codec,
+							int compressionThreshold,
+							RenjinTimingsImpl timings) {
+		this.flags = flags;
+		this.output = output;
+		this.timeTaken = timeTaken;
+		this.error = error;
+		this.cause = cause;
+		this.sexpInputs = sexpInputs;
+		this.primInputs = primInputs;
+		this.codec = codec;
+		this.compressionThreshold = compressionThreshold;
+		this.timings = timings;
+		if(codec != null)
+			this.flags |= COMPRESSED;
+		if(timings != null)
+			this.flags |= TIMED;
 	}
 
 	public boolean success() {
-		return (Boolean) resultMap.get("success");
+		return is(SUCCESS);
 	}
 
 	public String error() {
-		return (String) resultMap.get("error");
+		return error;
 	}
 
 	public Throwable cause() {
-		return (Throwable) resultMap.get("cause");
+		return cause;
+	}
+
+	public boolean timedOut() {
+		return is(TIMED_OUT);
 	}
 
-	public Map<String,Object> input() {
+	public synchronized Map<String,Object> input() {
 
-		Map<String,Object> inputMap = new HashMap();
+		if(inputView == null) {
 
-		boolean inputSerialized = (Boolean) resultMap.get("inputSerialized");
-		Map<String,Object> sexpInputs =
-			(Map<String,Object>) resultMap.get("sexpInputs");
-		Map<String,Object> primInputs =
-			(Map<String,Object>) resultMap.get("primInputs");
+			Map<String,Object> inputMap = new HashMap();
 
-		if(sexpInputs != null) {
-			if(inputSerialized) {
+			if(sexpInputs != null) {
+				if(is(INPUT_SERIALIZED)) {
 
-				for (Map.Entry<String, Object> pair : sexpInputs.entrySet()) {
-					inputMap.put(pair.getKey(),
-						deserializeSEXP((byte[]) pair.getValue()));
+					boolean decoded = true;
+					for (Map.Entry<String, Object> pair : sexpInputs.entrySet()) {
+						Object value = pair.getValue();
+						if(value instanceof byte[]) {
+							value = deserializeSEXP((byte[]) value, codec);
+							decoded &= (value != null);
+						}
+						inputMap.put(pair.getKey(), value);
+					}
+
+					/*
+					 * Serialized data is retained if any input failed
+					 * to deserialize, so remains available on the wire.
+					 */
+					if(is(RELEASE_SERIALIZED) && decoded)
+						sexpInputs = null;
+
+				} else {
+					inputMap.putAll(sexpInputs);
 				}
+			}
 
-			} else {
-				inputMap.putAll(sexpInputs);
+			if(primInputs != null) {
+				inputMap.putAll(primInputs);
 			}
-		}
 
-		if(primInputs != null) {
-			inputMap.putAll(primInputs);
+			inputView = inputMap;
 		}
 
-		return inputMap;
+		/*
+		 * Shallow copy, callers are free to modify returned map.
+		 */
+		return new HashMap(inputView);
 	}
 
-	public SEXP output() {
+	public synchronized SEXP output() {
 
-		boolean outputSerialized = (Boolean) resultMap.get("outputSerialized");
-		Object output = resultMap.get("output");
+		if(outputView == null && output != null) {
 
-		if(outputSerialized && output != null) {
-			output = deserializeSEXP((byte[]) output);
+			if(is(OUTPUT_SERIALIZED)) {
+				outputView = deserializeSEXP((byte[]) output, codec);
+				if(is(RELEASE_SERIALIZED) && outputView != null)
+					output = null;
+			} else {
+				outputView = (SEXP) output;
+			}
 		}
 
-		return (SEXP) output;
+		return outputView;
+	}
+
+	public synchronized boolean output(OutputStream out) throws IOException {
+
+		if(output != null && is(OUTPUT_SERIALIZED)) {
+			out.write(decodePayload((byte[]) output, codec));
+		} else if(outputView != null) {
+			serializeSEXP(outputView, out);
+		} else if(output != null) {
+			serializeSEXP((SEXP) output, out);
+		} else {
+			return false;
+		}
+		return true;
 	}
 
 	public long timeTaken() {
-		return (Long) resultMap.get("timeTaken");
+		return timeTaken;
+	}
+
+	public RenjinTimings timings() {
+		return (timings != null) ? timings : new RenjinTimingsImpl();
 	}
 
 	public String toString() {
-		boolean success = (Boolean) resultMap.get("success");
-		if(success) 
+		if(success())
 			return "RenjinResult: [ success ]";
 		else {
-			String error = (String) resultMap.get("error");
 			return "RenjinResult: [ failed ], error=" + error;
 		}
 	}
 
+	private boolean is(int flag) {
+		return (flags & flag) != 0;
+	}
+
+	public synchronized void writeExternal(ObjectOutput out)
+											throws IOException {
+
+		/*
+		 * Restore serialized data released following deserialization.
+		 */
+		Object outputData = output;
+		if(outputData == null && outputView != null && is(OUTPUT_SERIALIZED))
+			outputData = encodePayload(serializeSEXP(outputView), codec,
+										compressionThreshold);
+
+		Map<String,Object> sexpInputData = sexpInputs;
+		if(sexpInputData == null && inputView != null && is(INPUT_SERIALIZED)) {
+			sexpInputData = new HashMap();
+			for (Map.Entry<String, Object> pair : inputView.entrySet()) {
+				if(pair.getValue() instanceof SEXP) {
+					sexpInputData.put(pair.getKey(), pair.getValue());
+				}
+			}
+		}
+
+		/*
+		 * Serialize SEXP input data still in native SEXP encoded form.
+		 */
+		if(is(INPUT_SERIALIZED)) {
+			sexpInputData = serializeInputs(sexpInputData, codec,
+											compressionThreshold);
+		}
+
+		RenjinWireFormat.writeVersion(out);
+		out.writeInt(flags);
+		out.writeLong(timeTaken);
+		if(is(COMPRESSED)) {
+			out.writeObject(codec);
+			out.writeInt(compressionThreshold);
+		}
+		if(is(TIMED))
+			timings.writeTo(out);
+		if(!success()) {
+			RenjinWireFormat.writeString(out, error);
+			out.writeObject(cause);
+		}
+		if(is(OUTPUT_SERIALIZED))
+			RenjinWireFormat.writeBytes(out, (byte[]) outputData);
+		else
+			out.writeObject(outputData);
+		RenjinWireFormat.writeInputs(out, sexpInputData, is(INPUT_SERIALIZED));
+		RenjinWireFormat.writeInputs(out, primInputs, false);
+	}
+
+	public void readExternal(ObjectInput in)
+							throws IOException, ClassNotFoundException {
+
+		RenjinWireFormat.readVersion(in, getClass().getName());
+		flags = in.readInt();
+		timeTaken = in.readLong();
+		if(is(COMPRESSED)) {
+			codec = (RenjinCodec) in.readObject();
+			compressionThreshold = in.readInt();
+		}
+		if(is(TIMED))
+			timings = RenjinTimingsImpl.readFrom(in);
+		if(!success()) {
+			error = RenjinWireFormat.readString(in);
+			cause = (Throwable) in.readObject();
+		}
+		if(is(OUTPUT_SERIALIZED))
+			output = RenjinWireFormat.readBytes(in);
+		else
+			output = in.readObject();
+		sexpInputs = RenjinWireFormat.readInputs(in, is(INPUT_SERIALIZED));
+		primInputs = RenjinWireFormat.readInputs(in, false);
+	}
+
 }
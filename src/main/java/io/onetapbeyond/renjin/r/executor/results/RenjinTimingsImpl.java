@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor.results;
+
+import io.onetapbeyond.renjin.r.executor.RenjinTimings;
+import java.io.*;
+
+/*
+ * Concrete implementation of RenjinTimings. Phase times are
+ * accumulated by the executing task and engine pool, so are
+ * added rather than set, and written as a fixed sequence of
+ * longs on the result wire format. Additions are synchronized
+ * and stop once the execution ends, so a result never sees
+ * its timings change.
+ */
+public class RenjinTimingsImpl implements RenjinTimings {
+
+	private static final long serialVersionUID = 6021468335512309874L;
+
+	private volatile long acquireWait;
+	private volatile long engineCreate;
+	private volatile long inputDecode;
+	private volatile long bind;
+	private volatile long parse;
+	private volatile long eval;
+	private volatile long outputEncode;
+	private volatile long cleanup;
+
+	/*
+	 * Set once the execution ends, later additions are ignored.
+	 */
+	private boolean frozen;
+
+	public long acquireWait() {
+		return acquireWait;
+	}
+
+	public long engineCreate() {
+		return engineCreate;
+	}
+
+	public long inputDecode() {
+		return inputDecode;
+	}
+
+	public long bind() {
+		return bind;
+	}
+
+	public long parse() {
+		return parse;
+	}
+
+	public long eval() {
+		return eval;
+	}
+
+	public long outputEncode() {
+		return outputEncode;
+	}
+
+	public long cleanup() {
+		return cleanup;
+	}
+
+	public synchronized void addAcquireWait(long nanos) {
+		if(!frozen)
+			acquireWait += nanos;
+	}
+
+	public synchronized void addEngineCreate(long nanos) {
+		if(!frozen)
+			engineCreate += nanos;
+	}
+
+	public synchronized void addInputDecode(long nanos) {
+		if(!frozen)
+			inputDecode += nanos;
+	}
+
+	public synchronized void addBind(long nanos) {
+		if(!frozen)
+			bind += nanos;
+	}
+
+	public synchronized void addParse(long nanos) {
+		if(!frozen)
+			parse += nanos;
+	}
+
+	public synchronized void addEval(long nanos) {
+		if(!frozen)
+			eval += nanos;
+	}
+
+	public synchronized void addOutputEncode(long nanos) {
+		if(!frozen)
+			outputEncode += nanos;
+	}
+
+	public synchronized void addCleanup(long nanos) {
+		if(!frozen)
+			cleanup += nanos;
+	}
+
+	/*
+	 * End the execution, timings are then fixed. Evaluation abandoned
+	 * on timeout may still record phase times, which are dropped.
+	 */
+	public synchronized void freeze() {
+		frozen = true;
+	}
+
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeLong(acquireWait);
+		out.writeLong(engineCreate);
+		out.writeLong(inputDecode);
+		out.writeLong(bind);
+		out.writeLong(parse);
+		out.writeLong(eval);
+		out.writeLong(outputEncode);
+		out.writeLong(cleanup);
+	}
+
+	public static RenjinTimingsImpl readFrom(DataInput in) throws IOException {
+		RenjinTimingsImpl timings = new RenjinTimingsImpl();
+		timings.acquireWait = in.readLong();
+		timings.engineCreate = in.readLong();
+		timings.inputDecode = in.readLong();
+		timings.bind = in.readLong();
+		timings.parse = in.readLong();
+		timings.eval = in.readLong();
+		timings.outputEncode = in.readLong();
+		timings.cleanup = in.readLong();
+		timings.frozen = true;
+		return timings;
+	}
+
+	public String toString() {
+		return "RenjinTimings: [ acquireWait=" + acquireWait +
+			", engineCreate=" + engineCreate + ", inputDecode=" + inputDecode +
+			", bind=" + bind + ", parse=" + parse + ", eval=" + eval +
+			", outputEncode=" + outputEncode + ", cleanup=" + cleanup + " ]";
+	}
+
+}
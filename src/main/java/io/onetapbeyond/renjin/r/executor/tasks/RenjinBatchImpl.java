@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor.tasks;
+
+import io.onetapbeyond.renjin.r.executor.*;
+import io.onetapbeyond.renjin.r.executor.manager.RenjinManager;
+import io.onetapbeyond.renjin.r.executor.results.RenjinTimingsImpl;
+import static io.onetapbeyond.renjin.r.executor.manager.RenjinMetrics.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import javax.script.*;
+
+/*
+ * Concrete implementation of Renjin executor task batch.
+ *
+ * Instances of {@link RenjinBatch} as generated by
+ * the {@link Renjin} task builder.
+ */
+public class RenjinBatchImpl implements RenjinBatch {
+
+	/*
+	 * Generated SUID for RenjinBatch, generated using serialver.
+	 */
+	private static final long serialVersionUID = 5036714862209717312L;
+
+	/*
+	 * RenjinBatch tasks, executed in order.
+	 */
+	private final List<RenjinTaskImpl> tasks;
+
+	public RenjinBatchImpl(List<RenjinTaskImpl> tasks) {
+		this.tasks = tasks;
+	}
+
+	public List<RenjinResult> execute() {
+
+		List<RenjinResult> results =
+						new ArrayList<RenjinResult>(tasks.size());
+		if(tasks.isEmpty())
+			return results;
+
+		ScriptEngine engine = null;
+		RenjinTaskImpl previous = null;
+		RenjinTimingsImpl timings = null;
+
+		try {
+
+			for(RenjinTaskImpl task : tasks) {
+
+				/*
+				 * Retrieve a single Renjin ScriptEngine instance from
+				 * the RenjinManager for all tasks on the batch, unless
+				 * a timed out or cancelled task forced eviction.
+				 */
+				timings = task.resetTimings();
+				if(engine == null)
+					engine = RenjinManager.POOL.getEngine(timings);
+				else if(previous != null) {
+					/*
+					 * Inputs on the previous task are never visible
+					 * to the next task on the engine.
+					 */
+					previous.unbindInputs(engine);
+				}
+				previous = task;
+
+				long start = System.nanoTime();
+				RenjinResult result =
+					task.executeOn(engine, System.currentTimeMillis());
+				RenjinTaskImpl.recordOutcome(result, System.nanoTime() - start);
+				results.add(result);
+
+				if(RenjinTaskImpl.abandoned(result)) {
+					task.evictEngine(engine);
+					engine = null;
+					previous = null;
+				}
+			}
+
+		} catch(Throwable cause) {
+
+			/*
+			 * Engine unavailable, fail all remaining tasks.
+			 */
+			for(int i = results.size(); i < tasks.size(); i++) {
+				results.add(tasks.get(i).failure(cause));
+				METRICS.increment(FAILED);
+			}
+
+		} finally {
+
+			/*
+			 * Clear engine bindings and workspace once for the batch
+			 * and release engine back to the pool.
+			 */
+			if(engine != null) {
+				try {
+					/*
+					 * Cleanup time is accounted to the last task.
+					 */
+					RenjinTaskImpl.clearEngine(engine, timings);
+				} finally {
+					RenjinManager.POOL.releaseEngine(engine);
+				}
+			}
+
+			for(RenjinTaskImpl task : tasks) {
+				task.endTimings();
+			}
+		}
+
+		return results;
+	}
+
+	public CompletableFuture<List<RenjinResult>> executeAsync() {
+		return RenjinService.defaultService().submit(this);
+	}
+
+	public String toString() {
+		return "RenjinBatch: [ tasks=" + tasks.size() + " ]";
+	}
+
+}
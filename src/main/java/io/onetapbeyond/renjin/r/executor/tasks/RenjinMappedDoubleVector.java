@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor.tasks;
+
+import java.nio.DoubleBuffer;
+import org.renjin.sexp.*;
+
+/*
+ * Read-only R double vector backed by a DoubleBuffer, typically
+ * a view on a memory mapped file region shared across tasks and
+ * engines. Elements are read using absolute access only, so a
+ * single buffer can back many vectors concurrently. Replaced by
+ * a DoubleArrayVector when serialized.
+ */
+public class RenjinMappedDoubleVector extends DoubleVector {
+
+	private final transient DoubleBuffer values;
+
+	public RenjinMappedDoubleVector(DoubleBuffer values,
+									AttributeMap attributes) {
+		super(attributes);
+		this.values = values;
+	}
+
+	public int length() {
+		return values.limit();
+	}
+
+	public double getElementAsDouble(int index) {
+		return values.get(index);
+	}
+
+	public boolean isConstantAccessTime() {
+		return true;
+	}
+
+	/*
+	 * Attribute changes, such as setting dim on a matrix, share
+	 * the backing buffer rather than copying the vector.
+	 */
+	protected SEXP cloneWithNewAttributes(AttributeMap attributes) {
+		return new RenjinMappedDoubleVector(values, attributes);
+	}
+
+	private Object writeReplace() {
+		return new DoubleArrayVector(toDoubleArray(), getAttributes());
+	}
+
+}
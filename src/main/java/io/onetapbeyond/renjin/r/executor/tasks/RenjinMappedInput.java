@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor.tasks;
+
+import io.onetapbeyond.renjin.r.executor.manager.RenjinMappingCache;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.renjin.sexp.*;
+
+/*
+ * Reference to a memory mapped file region bound as a read-only
+ * R double or integer vector on task execution. Only the reference
+ * is carried on a serialized task, the file must be available at
+ * the same path on the JVM executing the task.
+ */
+public final class RenjinMappedInput {
+
+	public static final byte DOUBLE = 1;
+	public static final byte INT = 2;
+
+	private final String file;
+	private final byte type;
+	private final long offset;
+	private final int length;
+	private final boolean bigEndian;
+
+	/*
+	 * A length of -1 binds all elements from offset
+	 * to the end of the file.
+	 */
+	public RenjinMappedInput(String file,
+							 byte type,
+							 long offset,
+							 int length,
+							 ByteOrder order) {
+		this.file = file;
+		this.type = type;
+		this.offset = offset;
+		this.length = length;
+		this.bigEndian = (order == ByteOrder.BIG_ENDIAN);
+	}
+
+	/*
+	 * Bind the file region as an R vector on a view of the shared
+	 * mapping maintained by the RenjinMappingCache.
+	 */
+	public SEXP bind() throws IOException {
+
+		int width = (type == DOUBLE) ? 8 : 4;
+		long size = (length < 0) ? -1 : (long) length * width;
+
+		ByteBuffer mapping = RenjinMappingCache.MAPPINGS
+						.map(file, offset, size).duplicate()
+						.order(bigEndian ? ByteOrder.BIG_ENDIAN :
+										   ByteOrder.LITTLE_ENDIAN);
+
+		if(type == DOUBLE)
+			return new RenjinMappedDoubleVector(mapping.asDoubleBuffer(),
+												AttributeMap.EMPTY);
+		else
+			return new RenjinMappedIntVector(mapping.asIntBuffer(),
+											 AttributeMap.EMPTY);
+	}
+
+	public void writeTo(ObjectOutput out) throws IOException {
+		RenjinWireFormat.writeString(out, file);
+		out.writeByte(type);
+		out.writeLong(offset);
+		out.writeInt(length);
+		out.writeBoolean(bigEndian);
+	}
+
+	public static RenjinMappedInput readFrom(ObjectInput in)
+											throws IOException {
+		String file = RenjinWireFormat.readString(in);
+		byte type = in.readByte();
+		long offset = in.readLong();
+		int length = in.readInt();
+		ByteOrder order = in.readBoolean() ? ByteOrder.BIG_ENDIAN :
+											 ByteOrder.LITTLE_ENDIAN;
+		return new RenjinMappedInput(file, type, offset, length, order);
+	}
+
+	public String toString() {
+		return "RenjinMappedInput: [ " + file + " ], offset=" + offset +
+			   ", length=" + length;
+	}
+
+}
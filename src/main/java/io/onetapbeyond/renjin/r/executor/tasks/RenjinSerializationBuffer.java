@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor.tasks;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+ * Reusable per-thread output buffer for SEXP serialization.
+ *
+ * Each thread retains its buffer between serializations, so once
+ * grown to fit typical payloads serialization allocates little more
+ * than the payload itself. Buffers grown beyond the buffer limit
+ * are shrunk on release, bounding retained memory per thread. New
+ * buffers are sized from the average size of previous payloads.
+ */
+final class RenjinSerializationBuffer extends ByteArrayOutputStream {
+
+	/*
+	 * Maximum size (bytes) of buffer retained per thread. Custom
+	 * limit can be set using System property.
+	 */
+	private static final int LIMIT = Integer.getInteger(
+		"renjin-r-executor-serialization-buffer-limit", 4 * 1024 * 1024);
+
+	private static final int MIN_SIZE = 1024;
+
+	private static final ThreadLocal<RenjinSerializationBuffer> BUFFERS =
+		ThreadLocal.withInitial(RenjinSerializationBuffer::new);
+
+	/*
+	 * Moving average of payload size, used to size new buffers.
+	 */
+	private static volatile int averageSize = MIN_SIZE;
+
+	private boolean inUse;
+
+	private RenjinSerializationBuffer() {
+		super(Math.min(LIMIT, Math.max(MIN_SIZE, averageSize)));
+	}
+
+	/*
+	 * Acquire the buffer for the calling thread. If the buffer is
+	 * already in use on this thread, for example on serialization of
+	 * vector attributes, a fresh buffer is returned that is not
+	 * retained on release.
+	 */
+	static RenjinSerializationBuffer acquire() {
+		RenjinSerializationBuffer buffer = BUFFERS.get();
+		if(buffer.inUse)
+			return new RenjinSerializationBuffer();
+		buffer.inUse = true;
+		buffer.reset();
+		return buffer;
+	}
+
+	/*
+	 * Returns a copy of the buffer contents, exactly sized.
+	 */
+	byte[] toPayload() {
+		return Arrays.copyOf(buf, count);
+	}
+
+	/*
+	 * Returns a ByteBuffer wrapping size bytes at the start of the
+	 * buffer, growing the buffer if required. Bytes written to the
+	 * ByteBuffer are counted as buffer contents.
+	 */
+	ByteBuffer wrap(int size) {
+		if(buf.length < size)
+			buf = new byte[size];
+		count = size;
+		return ByteBuffer.wrap(buf, 0, size);
+	}
+
+	byte[] array() {
+		return buf;
+	}
+
+	void release() {
+		averageSize = (averageSize * 7 + count) / 8;
+		if(buf.length > LIMIT)
+			buf = new byte[Math.min(LIMIT, Math.max(MIN_SIZE, averageSize))];
+		count = 0;
+		inUse = false;
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor.tasks;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.renjin.eval.Context;
+
+/*
+ * Bounded pool of Renjin top level Contexts used by RDataReader
+ * and RDataWriter.
+ *
+ * Contexts are mutable so are used by one thread at a time, but
+ * each holds a Renjin Session, so are too costly to create per
+ * thread on applications with many threads. At most limit Contexts
+ * are ever created, on first demand, sized to the available cores
+ * as serialization is CPU bound. Threads wait for a Context when
+ * all are in use.
+ */
+final class RenjinSerializationContexts {
+
+	/*
+	 * Maximum number of Contexts created. Custom limit can be set
+	 * using System property, otherwise the number of cores.
+	 */
+	private static final int LIMIT = Math.max(1, Integer.getInteger(
+		"renjin-r-executor-serialization-contexts",
+		Runtime.getRuntime().availableProcessors()));
+
+	private static final ArrayBlockingQueue<Context> IDLE =
+		new ArrayBlockingQueue<Context>(LIMIT);
+
+	private static final AtomicInteger created = new AtomicInteger();
+
+	private RenjinSerializationContexts() {}
+
+	/*
+	 * Acquire a Context, creating a new Context while below the limit,
+	 * otherwise waiting for a Context to be released.
+	 */
+	static Context acquire() throws IOException {
+
+		Context context = IDLE.poll();
+		if(context != null)
+			return context;
+
+		while(true) {
+			int count = created.get();
+			if(count >= LIMIT)
+				break;
+			if(created.compareAndSet(count, count + 1))
+				return Context.newTopLevelContext();
+		}
+
+		try {
+			return IDLE.take();
+		} catch(InterruptedException iex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(
+				"Interrupted waiting for R serialization context.");
+		}
+	}
+
+	static void release(Context context) {
+		IDLE.offer(context);
+	}
+
+}
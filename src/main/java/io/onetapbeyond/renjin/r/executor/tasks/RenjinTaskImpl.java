@@ -16,25 +16,43 @@
 package io.onetapbeyond.renjin.r.executor.tasks;
 
 import io.onetapbeyond.renjin.r.executor.*;
+import io.onetapbeyond.renjin.r.executor.manager.RenjinInputRegistry;
 import io.onetapbeyond.renjin.r.executor.manager.RenjinManager;
+import static io.onetapbeyond.renjin.r.executor.manager.RenjinMetrics.*;
+import io.onetapbeyond.renjin.r.executor.manager.RenjinScriptCache;
 import io.onetapbeyond.renjin.r.executor.results.RenjinResultImpl;
+import io.onetapbeyond.renjin.r.executor.results.RenjinTimingsImpl;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.util.*;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.script.*;
 import org.renjin.sexp.*;
 import org.renjin.eval.Context;
+import org.renjin.script.RenjinScriptEngine;
 import org.renjin.primitives.io.serialization.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /*
  * Concrete implementation of Renjin executor task.
  * 
  * Instances of {@link RenjinTask} as generated by
- * the {@link Renjin} task builder.
+ * the {@link Renjin} task builder. Serialized using
+ * the compact {@link RenjinWireFormat}.
  */
-public class RenjinTaskImpl implements RenjinTask {
+public class RenjinTaskImpl implements RenjinTask, Externalizable {
 
 	/*
 	 * Generated SUID for RenjinTask, generated using serialver. 
@@ -44,19 +62,50 @@ public class RenjinTaskImpl implements RenjinTask {
 	/*
 	 * RenjinTask R code.
 	 */
-	private final String code;
+	private String code;
 
 	/*
-	 * RenjinTask SEXP input data. If disableTaskSerialization
-	 * is false, data is in serialized form, otherwise data
-	 * is in native SEXP encoded form.
+	 * RenjinTask SEXP input data, in native SEXP encoded form as
+	 * captured on the builder. If disableTaskSerialization is false,
+	 * data is serialized lazily when the task itself is serialized,
+	 * so on a deserialized task data is in serialized form.
 	 */
-	private final Map<String,Object> sexpInputs;
+	private Map<String,Object> sexpInputs;
+
+	/*
+	 * Serialized form of sexpInputs, generated on first serialization
+	 * of the task and reused on subsequent serializations.
+	 */
+	private transient Map<String,Object> serializedSexpInputs;
 
 	/*
 	 * RenjinTask primitive inputs.
 	 */
-	private final Map<String,Object> primInputs;
+	private Map<String,Object> primInputs;
+
+	/*
+	 * RenjinTask streamed SEXP inputs, each an InputStream on
+	 * serialized SEXP data read once on task execution.
+	 */
+	private Map<String,InputStream> streamInputs;
+
+	/*
+	 * Set once streamed inputs have been read, by execution or by
+	 * serialization. A task with streamed inputs is single-use.
+	 */
+	private transient boolean streamsConsumed;
+
+	/*
+	 * RenjinTask memory mapped SEXP inputs, bound as read-only
+	 * R vectors on task execution.
+	 */
+	private Map<String,RenjinMappedInput> mappedInputs;
+
+	/*
+	 * RenjinTask registered SEXP inputs, each a handle on data
+	 * held in the RenjinInputRegistry.
+	 */
+	private Map<String,String> refInputs;
 
 	/*
 	 * By default, all data maintained on RenjinTask are serialized.
@@ -68,6 +117,31 @@ public class RenjinTaskImpl implements RenjinTask {
 	 */
 	private boolean disableResultSerialization;
 
+	/*
+	 * If enabled, RenjinResult releases serialized data once
+	 * deserialized on first access.
+	 */
+	private boolean releaseSerializedResult;
+
+	/*
+	 * By default, RenjinTask inputs are echoed on RenjinResult.
+	 */
+	private boolean disableInputEcho;
+
+	/*
+	 * RenjinTask execution timeout (ms). If zero, the default
+	 * task timeout applies.
+	 */
+	private long timeout;
+
+	/*
+	 * Codec applied to serialized SEXP data on RenjinTask and
+	 * RenjinResult, null if compression disabled. Serialized data
+	 * smaller than compressionThreshold bytes is not compressed.
+	 */
+	private RenjinCodec codec;
+	private int compressionThreshold;
+
 	/*
 	 * Dedicated Renjin ScriptEngine for task, optional.
 	 */
@@ -81,24 +155,77 @@ public class RenjinTaskImpl implements RenjinTask {
 	 */
 	private transient boolean autoClearSuppliedEngine;
 
+	/*
+	 * If not null, task output is streamed in serialized form on
+	 * outputSink rather than returned on RenjinResult. Local to the
+	 * JVM on which the task was built.
+	 */
+	private transient OutputStream outputSink;
+
 	/*
 	 * Reference to the ScriptEngine used to execute the task itself.
 	 */
 	private transient ScriptEngine liveEngine;
 
+	/*
+	 * Evaluation of task code in progress on the evaluator when
+	 * a timeout applies, otherwise the thread evaluating task code
+	 * inline. Both guarded by this and used to cancel evaluation.
+	 */
+	private transient Future<SEXP> evaluation;
+	private transient Thread evaluatingThread;
+	private transient volatile boolean cancelled;
+
+	/*
+	 * Hand-off with the evaluator on the most recent evaluation
+	 * subject to a timeout, used to defer eviction of an engine
+	 * abandoned while still evaluating task code.
+	 */
+	private transient volatile Runaway runaway;
+
+	/*
+	 * Phase timings on the execution in progress, or most recently
+	 * completed, shared with the RenjinResult on that execution and
+	 * frozen once that execution ends.
+	 */
+	private transient volatile RenjinTimingsImpl timings;
+
+	/*
+	 * Required by Externalizable, used only on deserialization.
+	 */
+	public RenjinTaskImpl() {}
+
 	public RenjinTaskImpl(String code,
 						  Map<String,Object> sexpInputs,
 						  Map<String,Object> primInputs,
+						  Map<String,InputStream> streamInputs,
+						  Map<String,RenjinMappedInput> mappedInputs,
+						  Map<String,String> refInputs,
 						  boolean disableTaskSerialization,
 						  boolean disableResultSerialization,
+						  boolean releaseSerializedResult,
+						  boolean disableInputEcho,
+						  long timeout,
+						  RenjinCodec codec,
+						  int compressionThreshold,
+						  OutputStream outputSink,
 						  ScriptEngine suppliedEngine,
 						  boolean autoClearSuppliedEngine) {
 
 		this.code = code;
 		this.sexpInputs = sexpInputs;
 		this.primInputs = primInputs;
+		this.streamInputs = streamInputs;
+		this.mappedInputs = mappedInputs;
+		this.refInputs = refInputs;
 		this.disableTaskSerialization = disableTaskSerialization;
 		this.disableResultSerialization = disableResultSerialization;
+		this.releaseSerializedResult = releaseSerializedResult;
+		this.disableInputEcho = disableInputEcho;
+		this.timeout = timeout;
+		this.codec = codec;
+		this.compressionThreshold = compressionThreshold;
+		this.outputSink = outputSink;
 		this.suppliedEngine = suppliedEngine;
 		this.autoClearSuppliedEngine = autoClearSuppliedEngine;
 		this.liveEngine = null;
@@ -107,94 +234,629 @@ public class RenjinTaskImpl implements RenjinTask {
 	public RenjinResult execute() {
 
 		RenjinResult result = null;
+		long start = System.nanoTime();
 
 		try {
 
 			long taskStart = System.currentTimeMillis();
+			RenjinTimingsImpl timings = resetTimings();
+			liveEngine = null;
 
 			/*
 			 * Use Renjin ScriptEngine provided by external application,
 			 * otherwise retrieve a Renjin ScriptEngine instance from the
-			 * RenjinManager.
+			 * RenjinManager, blocking while the pool is exhausted.
 			 */
 			liveEngine = (suppliedEngine != null) ? suppliedEngine :
-								 RenjinManager.POOL.getEngine();
+								 RenjinManager.POOL.getEngine(timings);
 
-			/*
-			 * Set SEXP data inputs on the Renjin ScriptEngine.
-			 */
-			if(disableTaskSerialization) {
-				// Process unserialized SEXP data inputs.
-				for (Map.Entry<String, Object> pair : sexpInputs.entrySet()) {
-					liveEngine.put(pair.getKey(), pair.getValue());
+			result = executeOn(liveEngine, taskStart);
+
+		} catch(Throwable cause) {
+
+			result = failure(cause);
+
+		} finally {
+
+			if(abandoned(result)) {
+
+				/*
+				 * Engine still evaluating timed out or cancelled task
+				 * code, if engineFromPool evict engine from the pool.
+				 * A supplied engine is left to the application.
+				 */
+				if(engineFromPool()) {
+					evictEngine(liveEngine);
+				} else if(liveEngine != null) {
+					log.warn("R task abandoned on supplied ScriptEngine, " +
+						"engine may still be evaluating task code: {}",
+						result.error());
 				}
+
 			} else {
-				// Process serialized SEXP data inputs.
-				for (Map.Entry<String, Object> pair : sexpInputs.entrySet()) {
-					liveEngine.put(pair.getKey(),
-						deserializeSEXP((byte[]) pair.getValue()));
+
+				/*
+				 * Clear engine bindings and workspace if engineFromPool
+				 * or if engineSuppliedAndStateless.
+				 */
+				try {
+					if(engineFromPool() || engineSuppliedAndStateless()) {
+						clearEngine(liveEngine, timings);
+					}
+				} finally {
+					/*
+					 * If engineFromPool, release engine back to the pool.
+					 */
+					if(engineFromPool()) {
+						RenjinManager.POOL.releaseEngine(liveEngine);
+					}
 				}
 			}
 
-			/*
-			 * Set primitive data inputs on the Renjin ScriptEngine.
-			 */
-			for (Map.Entry<String, Object> pair : primInputs.entrySet()) {
-				liveEngine.put(pair.getKey(), pair.getValue());
+			endTimings();
+			recordOutcome(result, System.nanoTime() - start);
+		}
+
+		return result;
+	}
+
+	/*
+	 * Record task latency and outcome on RenjinMetrics.
+	 */
+	static void recordOutcome(RenjinResult result, long nanos) {
+		METRICS.record(TASK, nanos);
+		if(result != null && result.success())
+			METRICS.increment(SUCCEEDED);
+		else if(result != null && result.timedOut())
+			METRICS.increment(TIMED_OUT);
+		else
+			METRICS.increment(FAILED);
+	}
+
+	public boolean cancel() {
+		synchronized(this) {
+			if(evaluation != null) {
+				cancelled = true;
+				return evaluation.cancel(true);
+			} else if(evaluatingThread != null) {
+				cancelled = true;
+				evaluatingThread.interrupt();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/*
+	 * Execute the task on the Renjin ScriptEngine provided. Binds
+	 * task inputs, executes task code and builds the task result.
+	 * The caller is responsible for acquiring, clearing and
+	 * releasing the engine.
+	 */
+	RenjinResult executeOn(ScriptEngine engine, long taskStart) {
+
+		RenjinResult result = null;
+
+		try {
+
+			SEXP output = evaluateGuarded(engine);
+			long encodeStart = System.nanoTime();
+			result = success(output, System.currentTimeMillis()-taskStart);
+			recordEncode(System.nanoTime() - encodeStart);
+
+		} catch(Throwable cause) {
+
+			result = failure(cause);
+		}
+
+		return result;
+	}
+
+	/*
+	 * Bind task inputs and execute task code on the Renjin ScriptEngine
+	 * provided, subject to the task timeout and cancellation. If a
+	 * timeout applies, task code is evaluated on the evaluator and the
+	 * calling thread waits at most timeout for the output. Otherwise
+	 * task code is evaluated inline. On timeout or cancellation the
+	 * evaluating thread is interrupted and TimeoutException or
+	 * CancellationException raised, the engine must then be discarded
+	 * as it may still be evaluating task code.
+	 */
+	SEXP evaluateGuarded(ScriptEngine engine) throws Throwable {
+
+		long effectiveTimeout = (timeout > 0) ? timeout : DEFAULT_TIMEOUT;
+		RenjinTimingsImpl current = timings;
+		cancelled = false;
+		runaway = null;
+
+		if(effectiveTimeout > 0) {
+
+			Runaway guard = new Runaway();
+			runaway = guard;
+			Future<SEXP> future =
+				Evaluator.INSTANCE.submit(() -> {
+					try {
+						return evaluateOn(engine, current);
+					} finally {
+						guard.finished(engine);
+					}
+				});
+			synchronized(this) {
+				evaluation = future;
+			}
+
+			try {
+				return future.get(effectiveTimeout, TimeUnit.MILLISECONDS);
+			} catch(TimeoutException tex) {
+				future.cancel(true);
+				throw new TimeoutException("R task timed out after " +
+												effectiveTimeout + "ms.");
+			} catch(CancellationException cex) {
+				throw new CancellationException("R task cancelled.");
+			} catch(ExecutionException eex) {
+				throw eex.getCause();
+			} finally {
+				synchronized(this) {
+					evaluation = null;
+				}
+			}
+
+		} else {
+
+			synchronized(this) {
+				evaluatingThread = Thread.currentThread();
+			}
+
+			SEXP output = null;
+			Throwable failure = null;
+			try {
+				output = evaluateOn(engine, current);
+			} catch(Throwable cause) {
+				failure = cause;
+			}
+
+			synchronized(this) {
+				evaluatingThread = null;
 			}
 
 			/*
-			 * Execute code on the RenjinTask.
+			 * Cancellation wins over the evaluation outcome, clear
+			 * any interrupt raised by cancel() on this thread.
 			 */
-			long execstart = System.currentTimeMillis();
-			SEXP output = (SEXP) liveEngine.eval(code);
-			long execend = System.currentTimeMillis();
+			if(cancelled) {
+				Thread.interrupted();
+				throw new CancellationException("R task cancelled.");
+			}
+			if(failure != null)
+				throw failure;
+			return output;
+		}
+	}
 
-			if(disableResultSerialization) {
+	/*
+	 * Returns true if the task result signals the engine was abandoned
+	 * while evaluating task code, following timeout or cancellation.
+	 */
+	static boolean abandoned(RenjinResult result) {
+		return (result != null) && abandoned(result.cause());
+	}
 
-				/*
-				 * Set SEXP encoded data on RenjinResult.
-				 */
-				result = new RenjinResultImpl(buildResultMap(output,
-								(System.currentTimeMillis()-taskStart)));
-			} else {
+	static boolean abandoned(Throwable cause) {
+		return (cause instanceof TimeoutException) ||
+			   (cause instanceof CancellationException);
+	}
 
-				/*
-				 * Set SEXP serialized data on RenjinResult.
-				 */
-				result =
-					new RenjinResultImpl(buildResultMap(serializeSEXP(output),
-								(System.currentTimeMillis()-taskStart)));
+	/*
+	 * Evict a pooled engine abandoned by timed out or cancelled task
+	 * code. While the evaluator is still running the task code the
+	 * engine stays counted against the pool limit, holding its permit,
+	 * and eviction is deferred until the evaluation ends. Runaway code
+	 * therefore never grows live engines or evaluator threads beyond
+	 * the pool limit, instead it exhausts the pool until it ends.
+	 */
+	void evictEngine(ScriptEngine engine) {
+		Runaway guard = runaway;
+		runaway = null;
+		if(guard == null || !guard.defer())
+			RenjinManager.POOL.evictEngine(engine);
+	}
+
+	/*
+	 * Bind task inputs and execute task code on the Renjin
+	 * ScriptEngine provided, returning the task output. Phase
+	 * times are recorded on the timings of the execution that
+	 * started the evaluation, never on a later execution.
+	 */
+	SEXP evaluateOn(ScriptEngine engine, RenjinTimingsImpl current)
+				throws ScriptException, IOException, RenjinException {
+
+		/*
+		 * Time spent deserializing inputs is accounted as input decode,
+		 * all other time spent setting inputs is accounted as bind.
+		 */
+		long bindStart = System.nanoTime();
+		long decode = 0;
+
+		/*
+		 * Set SEXP data inputs on the Renjin ScriptEngine, deserializing
+		 * data inputs received in serialized form.
+		 */
+		for (Map.Entry<String, Object> pair : sexpInputs.entrySet()) {
+			Object value = pair.getValue();
+			if(value instanceof byte[]) {
+				long decodeStart = System.nanoTime();
+				value = deserializeSEXP((byte[]) value, codec);
+				decode += System.nanoTime() - decodeStart;
 			}
+			engine.put(pair.getKey(), value);
+		}
 
-		} catch(Throwable cause) {
+		/*
+		 * Set streamed SEXP data inputs on the Renjin ScriptEngine,
+		 * each stream is read once and closed.
+		 */
+		if(!consumeStreams())
+			throw new RenjinException(STREAMS_CONSUMED);
+		for (Map.Entry<String, InputStream> pair : streamInputs.entrySet()) {
+			try(InputStream source = pair.getValue()) {
+				long decodeStart = System.nanoTime();
+				SEXP value = deserializeSEXP(source);
+				decode += System.nanoTime() - decodeStart;
+				engine.put(pair.getKey(), value);
+			}
+		}
+
+		/*
+		 * Set memory mapped SEXP data inputs on the Renjin ScriptEngine.
+		 */
+		for (Map.Entry<String, RenjinMappedInput> pair :
+											mappedInputs.entrySet()) {
+			engine.put(pair.getKey(), pair.getValue().bind());
+		}
 
-			result = new RenjinResultImpl(buildResultMap(cause.getMessage(),
-																	cause));
+		/*
+		 * Set registered SEXP data inputs on the Renjin ScriptEngine.
+		 */
+		for (Map.Entry<String, String> pair : refInputs.entrySet()) {
+			SEXP value = RenjinInputRegistry.REGISTRY.lookup(pair.getValue());
+			if(value == null)
+				throw new RenjinException("R input \"" + pair.getKey() +
+					"\" handle " + pair.getValue() + " not registered.");
+			engine.put(pair.getKey(), value);
+		}
 
+		/*
+		 * Set primitive data inputs on the Renjin ScriptEngine.
+		 */
+		for (Map.Entry<String, Object> pair : primInputs.entrySet()) {
+			engine.put(pair.getKey(), pair.getValue());
+		}
+
+		long bind = System.nanoTime() - bindStart - decode;
+		if(current != null) {
+			current.addInputDecode(decode);
+			current.addBind(bind);
+		}
+		if(decode > 0)
+			METRICS.record(DECODE, decode);
+		METRICS.record(BIND, bind);
+
+		/*
+		 * Execute code on the RenjinTask, recording bytes allocated
+		 * by task code against the engine for pool recycling.
+		 */
+		long allocated = RenjinManager.threadAllocatedBytes();
+		try {
+			return evaluate(engine, code, current);
 		} finally {
+			if(allocated >= 0) {
+				RenjinManager.POOL.recordAllocation(engine,
+					RenjinManager.threadAllocatedBytes() - allocated);
+			}
+		}
+	}
+
+	/*
+	 * Build result for successful task execution.
+	 */
+	RenjinResult success(SEXP output, long timeTaken) {
+		return success(output, timeTaken,
+						echoedSexpInputs(), echoedPrimInputs());
+	}
+
+	/*
+	 * Build result for successful task execution, echoing the
+	 * inputs provided.
+	 */
+	RenjinResult success(SEXP output,
+						 long timeTaken,
+						 Map<String,Object> sexpEcho,
+						 Map<String,Object> primEcho) {
+
+		if(outputSink != null) {
 
 			/*
-			 * Clear engine bindings and workspace if engineFromPool
-			 * or if engineSuppliedAndStateless.
+			 * Stream SEXP serialized data on outputSink, no
+			 * output data is set on RenjinResult.
 			 */
 			try {
-				if(engineFromPool() || engineSuppliedAndStateless()) {
-					liveEngine.getBindings(ScriptContext.ENGINE_SCOPE).clear();
-					liveEngine.eval(RENJIN_CLEAR);
-				}
-			} catch(ScriptException sex) {}
+				serializeSEXP(output, outputSink);
+				outputSink.flush();
+			} catch(IOException oex) {
+				return failure(oex);
+			}
+			return new RenjinResultImpl(resultFlags(true, false), null,
+										timeTaken, null, null,
+										sexpEcho, primEcho,
+										codec, compressionThreshold, timings);
+
+		} else if(disableResultSerialization) {
+
+			/*
+			 * Set SEXP encoded data on RenjinResult.
+			 */
+			return new RenjinResultImpl(resultFlags(true, false), output,
+										timeTaken, null, null,
+										sexpEcho, primEcho,
+										codec, compressionThreshold, timings);
+		} else {
+
 			/*
-			 * If engineFromPool, release engine back to the pool.
+			 * Set SEXP serialized data on RenjinResult.
 			 */
-			if(engineFromPool()) {
-				RenjinManager.POOL.releaseEngine(liveEngine);
+			return new RenjinResultImpl(resultFlags(true, false),
+										serializeSEXP(output, codec,
+													compressionThreshold),
+										timeTaken, null, null,
+										sexpEcho, primEcho,
+										codec, compressionThreshold, timings);
+		}
+	}
+
+	/*
+	 * Build result for failed task execution.
+	 */
+	RenjinResult failure(Throwable cause) {
+		return failure(cause, echoedSexpInputs(), echoedPrimInputs());
+	}
+
+	/*
+	 * Build result for failed task execution, echoing the
+	 * inputs provided.
+	 */
+	RenjinResult failure(Throwable cause,
+						 Map<String,Object> sexpEcho,
+						 Map<String,Object> primEcho) {
+		return new RenjinResultImpl(
+					resultFlags(false, cause instanceof TimeoutException),
+					null, 0L, cause.getMessage(), cause,
+					sexpEcho, primEcho,
+					codec, compressionThreshold, timings);
+	}
+
+	/*
+	 * Returns true if inputs are echoed on task results.
+	 */
+	boolean echoInputs() {
+		return !disableInputEcho;
+	}
+
+	/*
+	 * Returns SEXP data input, deserialized if received in
+	 * serialized form.
+	 */
+	SEXP sexpInput(String name) {
+		Object value = sexpInputs.get(name);
+		return (value instanceof byte[]) ?
+			deserializeSEXP((byte[]) value, codec) : (SEXP) value;
+	}
+
+	/*
+	 * Remove the bindings for all task inputs from the Renjin
+	 * ScriptEngine, used between tasks sharing an engine.
+	 */
+	void unbindInputs(ScriptEngine engine) {
+		Set<String> names = new HashSet<String>();
+		names.addAll(sexpInputs.keySet());
+		names.addAll(primInputs.keySet());
+		names.addAll(streamInputs.keySet());
+		names.addAll(mappedInputs.keySet());
+		names.addAll(refInputs.keySet());
+		Bindings bindings = engine.getBindings(ScriptContext.ENGINE_SCOPE);
+		Environment global = (engine instanceof RenjinScriptEngine) ?
+			((RenjinScriptEngine) engine).getTopLevelContext()
+										 .getGlobalEnvironment() : null;
+		for(String name : names) {
+			bindings.remove(name);
+			if(global != null)
+				global.remove(Symbol.get(name));
+		}
+	}
+
+	/*
+	 * Start phase timings on a new execution of the task.
+	 */
+	RenjinTimingsImpl resetTimings() {
+		RenjinTimingsImpl fresh = new RenjinTimingsImpl();
+		timings = fresh;
+		return fresh;
+	}
+
+	/*
+	 * End phase timings on the current execution of the task, once
+	 * the result is complete. Times recorded later, such as by an
+	 * evaluator abandoned on timeout, are ignored so the timings on
+	 * a returned result never change.
+	 */
+	void endTimings() {
+		RenjinTimingsImpl current = timings;
+		if(current != null)
+			current.freeze();
+	}
+
+	/*
+	 * Record time spent building the task result, including
+	 * serialization of data outputs.
+	 */
+	void recordEncode(long nanos) {
+		RenjinTimingsImpl current = timings;
+		if(current != null)
+			current.addOutputEncode(nanos);
+		METRICS.record(ENCODE, nanos);
+	}
+
+	/*
+	 * Clear the Renjin ScriptEngine, recording time spent on the
+	 * phase timings provided, if any.
+	 */
+	static void clearEngine(ScriptEngine engine, RenjinTimingsImpl timings) {
+		long cleanupStart = System.nanoTime();
+		clearEngine(engine);
+		long cleanup = System.nanoTime() - cleanupStart;
+		if(timings != null)
+			timings.addCleanup(cleanup);
+		METRICS.record(CLEANUP, cleanup);
+	}
+
+	/*
+	 * Clear bindings and workspace on the Renjin ScriptEngine. When
+	 * the engine is a RenjinScriptEngine the workspace is reset
+	 * natively, otherwise R code to clear the workspace is evaluated.
+	 */
+	static void clearEngine(ScriptEngine engine) {
+		try {
+			engine.getBindings(ScriptContext.ENGINE_SCOPE).clear();
+			if(engine instanceof RenjinScriptEngine)
+				resetEngine((RenjinScriptEngine) engine);
+			else
+				engine.eval(RENJIN_CLEAR);
+		} catch(Exception sex) {}
+	}
+
+	/*
+	 * Remove every binding on the global environment in a single pass,
+	 * without parsing or evaluating R code. Unlike rm(list = ls()),
+	 * hidden bindings such as .Random.seed and other dot-variables are
+	 * also removed. Base environment bindings, attached on the search
+	 * path below the global environment, are unaffected.
+	 */
+	static void resetEngine(RenjinScriptEngine engine) {
+		Environment global =
+			engine.getTopLevelContext().getGlobalEnvironment();
+		for(Symbol symbol : new ArrayList<Symbol>(global.getSymbolNames())) {
+			global.remove(symbol);
+		}
+	}
+
+	public CompletableFuture<RenjinResult> executeAsync() {
+		return RenjinService.defaultService().submit(this);
+	}
+
+	/*
+	 * Evaluate R code on the Renjin ScriptEngine. When the engine is
+	 * a RenjinScriptEngine the parsed form of the R code is retrieved
+	 * from the RenjinScriptCache and evaluated directly on the top
+	 * level context of the engine, avoiding a re-parse of the R code
+	 * on every execution. Parse and eval times are recorded on the
+	 * phase timings provided, if any. On other engines parsing is
+	 * internal to the engine so is accounted as eval.
+	 */
+	private static SEXP evaluate(ScriptEngine engine,
+								 String code,
+								 RenjinTimingsImpl timings)
+								 		throws ScriptException {
+
+		long parse = 0;
+		long evalStart = System.nanoTime();
+		try {
+
+			if(engine instanceof RenjinScriptEngine) {
+
+				Context context =
+					((RenjinScriptEngine) engine).getTopLevelContext();
+				ExpressionVector expressions =
+					RenjinScriptCache.CACHE.parse(code);
+				parse = System.nanoTime() - evalStart;
+				SEXP output = Null.INSTANCE;
+				for(SEXP expression : expressions) {
+					output = context.evaluate(expression);
+				}
+				return output;
+
+			} else {
+				return (SEXP) engine.eval(code);
 			}
+
+		} finally {
+			long eval = System.nanoTime() - evalStart - parse;
+			if(timings != null) {
+				timings.addParse(parse);
+				timings.addEval(eval);
+			}
+			METRICS.record(PARSE, parse);
+			METRICS.record(EVAL, eval);
 		}
+	}
 
-		return result;
+	/*
+	 * Default RenjinTask execution timeout (ms). Custom default can
+	 * be set using System property, otherwise defaults to zero,
+	 * no timeout.
+	 */
+	private static final long DEFAULT_TIMEOUT =
+		Long.getLong("renjin-r-executor-task-timeout", 0);
+
+	/*
+	 * Evaluator of task code subject to a timeout. Threads left
+	 * evaluating runaway task code do not block new evaluations.
+	 */
+	private static class Evaluator {
+
+		private static final AtomicInteger threads = new AtomicInteger();
+
+		private static final ExecutorService INSTANCE =
+			Executors.newCachedThreadPool(r -> {
+				Thread t = new Thread(r, "renjin-r-executor-eval-" +
+											threads.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
 	}
 
+	/*
+	 * Hand-off between the caller abandoning an evaluation and the
+	 * evaluator thread running it. Exactly one side evicts the
+	 * engine: the caller if evaluation already ended, otherwise
+	 * the evaluator once evaluation ends.
+	 */
+	private static class Runaway {
+
+		private static final int RUNNING = 0;
+		private static final int FINISHED = 1;
+		private static final int DEFERRED = 2;
+
+		private final AtomicInteger state = new AtomicInteger(RUNNING);
+
+		/*
+		 * Evaluation ended, evict engine if eviction was deferred.
+		 */
+		void finished(ScriptEngine engine) {
+			if(!state.compareAndSet(RUNNING, FINISHED))
+				RenjinManager.POOL.evictEngine(engine);
+		}
+
+		/*
+		 * Returns true if evaluation is still running, eviction
+		 * is then left to the evaluator.
+		 */
+		boolean defer() {
+			return state.compareAndSet(RUNNING, DEFERRED);
+		}
+	}
+
+	private static final Logger log =
+		LoggerFactory.getLogger(RenjinTaskImpl.class);
+
 	private boolean engineFromPool() {
 		return (liveEngine != suppliedEngine);
 	}
@@ -204,81 +866,288 @@ public class RenjinTaskImpl implements RenjinTask {
 	}
 
 	/* 
-	 * Build resultMap based on successful task execution data 
-	 * and meta-data to support {@link RenjinResult}.
+	 * Build result flags based on task execution outcome
+	 * and {@link RenjinTask} serialization options.
 	 */
-	private Map<String,Object> buildResultMap(Object output,
-											  long timeTaken) {
-
-		Map<String,Object> resultMap = new HashMap();
-		resultMap.put("success", true);
-		resultMap.put("timeTaken", timeTaken);
-		resultMap.put("output", output);
-		resultMap.put("outputSerialized", !disableResultSerialization);
-		resultMap.putAll(buildInputMap());
-		resultMap.put("error", null);
-		resultMap.put("cause", null);
-		return resultMap;
+	private int resultFlags(boolean success, boolean timedOut) {
+		int flags = 0;
+		if(success)
+			flags |= RenjinResultImpl.SUCCESS;
+		if(timedOut)
+			flags |= RenjinResultImpl.TIMED_OUT;
+		if(!disableResultSerialization)
+			flags |= RenjinResultImpl.OUTPUT_SERIALIZED;
+		if(!disableTaskSerialization)
+			flags |= RenjinResultImpl.INPUT_SERIALIZED;
+		if(releaseSerializedResult)
+			flags |= RenjinResultImpl.RELEASE_SERIALIZED;
+		return flags;
 	}
 
 	/* 
-	 * Build resultMap based on failed task execution data 
-	 * and meta-data to support {@link RenjinResult}.
+	 * Inputs echoed on {@link RenjinResult}, based on echo option.
 	 */
-	private Map<String,Object> buildResultMap(String error,
-											  Throwable cause) {
+	private Map<String,Object> echoedSexpInputs() {
+		return disableInputEcho ? null : sexpInputs;
+	}
 
-		Map<String,Object> resultMap = new HashMap();
-		resultMap.put("success", false);
-		resultMap.put("timeTaken", 0L);
-		resultMap.put("output", null);
-		resultMap.put("outputSerialized", !disableResultSerialization);
-		resultMap.putAll(buildInputMap());
-		resultMap.put("error", error);
-		resultMap.put("cause", cause);
-		return resultMap;
+	private Map<String,Object> echoedPrimInputs() {
+		return disableInputEcho ? null : primInputs;
 	}
 
-	/* 
-	 * Build inputMap data and meta-data based on
-	 * {@link RenjinTask} inputs and serialization options.
+	/*
+	 * Claim streamed inputs for reading, returns false if already
+	 * read by an earlier execution or serialization of the task.
 	 */
-	private Map<String,Object> buildInputMap() {
-		Map<String,Object> inputMap = new HashMap();
-		inputMap.put("sexpInputs", sexpInputs);
-		inputMap.put("primInputs", primInputs);
-		inputMap.put("inputSerialized", !disableTaskSerialization);
-		return inputMap;
+	private synchronized boolean consumeStreams() {
+		if(streamInputs.isEmpty())
+			return true;
+		if(streamsConsumed)
+			return false;
+		streamsConsumed = true;
+		return true;
 	}
 
-	private static final Context TLC = Context.newTopLevelContext();
+	private static final String STREAMS_CONSUMED =
+		"R task streamed inputs already read, a task with streamed " +
+		"inputs can be executed or serialized only once.";
+
+	/*
+	 * RenjinTask wire format flags, written as an int.
+	 */
+	private static final int TASK_SERIALIZATION_DISABLED = 1;
+	private static final int RESULT_SERIALIZATION_DISABLED = 2;
+	private static final int RELEASE_SERIALIZED_RESULT = 4;
+	private static final int INPUT_ECHO_DISABLED = 8;
+	private static final int COMPRESSED = 16;
+	private static final int STREAMED = 32;
+	private static final int MAPPED = 64;
+	private static final int REFERENCED = 128;
+
+	public void writeExternal(ObjectOutput out) throws IOException {
 
+		int flags = 0;
+		if(disableTaskSerialization)
+			flags |= TASK_SERIALIZATION_DISABLED;
+		if(disableResultSerialization)
+			flags |= RESULT_SERIALIZATION_DISABLED;
+		if(releaseSerializedResult)
+			flags |= RELEASE_SERIALIZED_RESULT;
+		if(disableInputEcho)
+			flags |= INPUT_ECHO_DISABLED;
+		if(codec != null)
+			flags |= COMPRESSED;
+		if(!streamInputs.isEmpty())
+			flags |= STREAMED;
+		if(!mappedInputs.isEmpty())
+			flags |= MAPPED;
+		if(!refInputs.isEmpty())
+			flags |= REFERENCED;
+
+		RenjinWireFormat.writeVersion(out);
+		out.writeInt(flags);
+		out.writeLong(timeout);
+		if(codec != null) {
+			out.writeObject(codec);
+			out.writeInt(compressionThreshold);
+		}
+		RenjinWireFormat.writeString(out, code);
+		RenjinWireFormat.writeInputs(out, disableTaskSerialization ?
+									sexpInputs : serializedSexpInputs(),
+									!disableTaskSerialization);
+		RenjinWireFormat.writeInputs(out, primInputs, false);
+
+		/*
+		 * Streamed inputs are copied in chunks onto the wire.
+		 */
+		if(!streamInputs.isEmpty()) {
+			if(!consumeStreams())
+				throw new NotSerializableException(STREAMS_CONSUMED);
+			out.writeInt(streamInputs.size());
+			for (Map.Entry<String, InputStream> pair : streamInputs.entrySet()) {
+				RenjinWireFormat.writeString(out, pair.getKey());
+				try(InputStream source = pair.getValue()) {
+					RenjinWireFormat.writeStream(out, source);
+				}
+			}
+		}
+
+		/*
+		 * Memory mapped inputs are written by reference.
+		 */
+		if(!mappedInputs.isEmpty()) {
+			out.writeInt(mappedInputs.size());
+			for (Map.Entry<String, RenjinMappedInput> pair :
+											mappedInputs.entrySet()) {
+				RenjinWireFormat.writeString(out, pair.getKey());
+				pair.getValue().writeTo(out);
+			}
+		}
+
+		/*
+		 * Registered inputs are written by handle only.
+		 */
+		if(!refInputs.isEmpty()) {
+			out.writeInt(refInputs.size());
+			for (Map.Entry<String, String> pair : refInputs.entrySet()) {
+				RenjinWireFormat.writeString(out, pair.getKey());
+				RenjinWireFormat.writeString(out, pair.getValue());
+			}
+		}
+	}
+
+	public void readExternal(ObjectInput in)
+							throws IOException, ClassNotFoundException {
+
+		RenjinWireFormat.readVersion(in, getClass().getName());
+		int flags = in.readInt();
+		disableTaskSerialization = (flags & TASK_SERIALIZATION_DISABLED) != 0;
+		disableResultSerialization = (flags & RESULT_SERIALIZATION_DISABLED) != 0;
+		releaseSerializedResult = (flags & RELEASE_SERIALIZED_RESULT) != 0;
+		disableInputEcho = (flags & INPUT_ECHO_DISABLED) != 0;
+		timeout = in.readLong();
+		if((flags & COMPRESSED) != 0) {
+			codec = (RenjinCodec) in.readObject();
+			compressionThreshold = in.readInt();
+		}
+		code = RenjinWireFormat.readString(in);
+		sexpInputs = RenjinWireFormat.readInputs(in,
+									!disableTaskSerialization);
+		primInputs = RenjinWireFormat.readInputs(in, false);
+		streamInputs = new HashMap<String,InputStream>();
+		if((flags & STREAMED) != 0) {
+			int size = in.readInt();
+			for(int i = 0; i < size; i++) {
+				String name = RenjinWireFormat.readString(in);
+				streamInputs.put(name, RenjinWireFormat.readStream(in));
+			}
+		}
+		mappedInputs = new HashMap<String,RenjinMappedInput>();
+		if((flags & MAPPED) != 0) {
+			int size = in.readInt();
+			for(int i = 0; i < size; i++) {
+				String name = RenjinWireFormat.readString(in);
+				mappedInputs.put(name, RenjinMappedInput.readFrom(in));
+			}
+		}
+		refInputs = new HashMap<String,String>();
+		if((flags & REFERENCED) != 0) {
+			int size = in.readInt();
+			for(int i = 0; i < size; i++) {
+				String name = RenjinWireFormat.readString(in);
+				refInputs.put(name, RenjinWireFormat.readString(in));
+			}
+		}
+	}
+
+	/*
+	 * Read R serialized SEXP data using a Renjin Context borrowed
+	 * from the bounded RenjinSerializationContexts pool.
+	 */
+	private static SEXP readR(InputStream in) throws IOException {
+		Context context = RenjinSerializationContexts.acquire();
+		try {
+			return new RDataReader(context, in).readFile();
+		} finally {
+			RenjinSerializationContexts.release(context);
+		}
+	}
+
+	/*
+	 * Write R serialized SEXP data using a Renjin Context borrowed
+	 * from the bounded RenjinSerializationContexts pool.
+	 */
+	private static void writeR(SEXP data, OutputStream out) throws IOException {
+		Context context = RenjinSerializationContexts.acquire();
+		try {
+			new RDataWriter(context, out).save(data);
+		} finally {
+			RenjinSerializationContexts.release(context);
+		}
+	}
+
+	/*
+	 * Returns the serialized form of sexpInputs, serializing on
+	 * first call only.
+	 */
+	private synchronized Map<String,Object> serializedSexpInputs()
+												throws IOException {
+		if(serializedSexpInputs == null) {
+			serializedSexpInputs =
+				serializeInputs(sexpInputs, codec, compressionThreshold);
+		}
+		return serializedSexpInputs;
+	}
+
+	/*
+	 * Returns a copy of SEXP input data with values in native SEXP
+	 * encoded form serialized, values already in serialized form
+	 * are copied as is.
+	 */
+	public static Map<String,Object> serializeInputs(Map<String,Object> inputs,
+											RenjinCodec codec,
+											int threshold) throws IOException {
+		if(inputs == null)
+			return null;
+		Map<String,Object> serialized = new HashMap<String,Object>(
+							Math.max(16, (int) (inputs.size() / 0.75f) + 1));
+		for (Map.Entry<String, Object> pair : inputs.entrySet()) {
+			Object value = pair.getValue();
+			if(value instanceof SEXP) {
+				value = encodePayload(serializeSEXP((SEXP) value),
+												codec, threshold);
+				if(value == null)
+					throw new NotSerializableException("R input \"" +
+						pair.getKey() + "\" could not be serialized.");
+			}
+			serialized.put(pair.getKey(), value);
+		}
+		return serialized;
+	}
+
+	/*
+	 * Deserialize SEXP data, written either by the RenjinVectorFormat
+	 * fast path or by R serialization.
+	 */
 	public static SEXP deserializeSEXP(byte[] data) {
 
 		SEXP deserializedSEXP = null;
 
 		try {
-			long start = System.currentTimeMillis();
-			ByteArrayInputStream bais = new
-				        	ByteArrayInputStream(data);
-		    RDataReader reader = new RDataReader(TLC, bais);
-		    deserializedSEXP = reader.readFile();
+			if(RenjinVectorFormat.matches(data))
+				return RenjinVectorFormat.read(data);
+
+			deserializedSEXP = readR(new ByteArrayInputStream(data));
 		} catch(Exception dex) {}
 
 		return deserializedSEXP;
 	}
 
+	/*
+	 * Serialize SEXP data, using the RenjinVectorFormat fast path for
+	 * supported atomic vectors, otherwise using R serialization on the
+	 * reusable RenjinSerializationBuffer for the calling thread. Vectors
+	 * rejected by the fast path fall back to R serialization.
+	 */
 	public static byte[] serializeSEXP(SEXP data) {
 
 		byte[] serializedSEXP = null;
 
 		try {
-			long start = System.currentTimeMillis();
-	        ByteArrayOutputStream baos =
-			        	new ByteArrayOutputStream();
-	        RDataWriter writer = new RDataWriter(TLC, baos);
-		    writer.save(data);
-			serializedSEXP = baos.toByteArray();
+			if(RenjinVectorFormat.supports(data)) {
+				try {
+					return RenjinVectorFormat.write(data);
+				} catch(IllegalArgumentException iax) {}
+			}
+
+			RenjinSerializationBuffer buffer =
+					RenjinSerializationBuffer.acquire();
+			try {
+				writeR(data, buffer);
+				serializedSEXP = buffer.toPayload();
+			} finally {
+				buffer.release();
+			}
 
 		} catch(Exception dex) {}
 
@@ -286,9 +1155,164 @@ public class RenjinTaskImpl implements RenjinTask {
 	}
 
 	/*
-	 * Renjin R command to 'refresh' ScriptEngine after use.
+	 * Deserialize SEXP data streamed from the InputStream provided,
+	 * written either by the RenjinVectorFormat fast path or by R
+	 * serialization. The stream must hold a single serialized SEXP.
+	 */
+	public static SEXP deserializeSEXP(InputStream in) throws IOException {
+
+		PushbackInputStream source = new PushbackInputStream(in, 4);
+		byte[] magic = new byte[4];
+		int read = 0;
+		while(read < magic.length) {
+			int n = source.read(magic, read, magic.length - read);
+			if(n < 0)
+				break;
+			read += n;
+		}
+		source.unread(magic, 0, read);
+
+		if(RenjinVectorFormat.matchesMagic(magic)) {
+			return RenjinVectorFormat.read(Channels.newChannel(source));
+		} else {
+			return readR(source);
+		}
+	}
+
+	/*
+	 * Returns the RenjinVectorFormat size of data, or -1 if data is
+	 * not supported or is rejected by the fast path.
+	 */
+	private static int fastPathSize(SEXP data) {
+		if(!RenjinVectorFormat.supports(data))
+			return -1;
+		try {
+			return RenjinVectorFormat.size(data);
+		} catch(IllegalArgumentException iax) {
+			return -1;
+		}
+	}
+
+	/*
+	 * Serialize SEXP data directly on the OutputStream provided.
+	 */
+	public static void serializeSEXP(SEXP data,
+									 OutputStream out) throws IOException {
+
+		int size = fastPathSize(data);
+		if(size >= 0) {
+
+			RenjinSerializationBuffer buffer =
+					RenjinSerializationBuffer.acquire();
+			try {
+				RenjinVectorFormat.write(data, buffer.wrap(size));
+				out.write(buffer.array(), 0, size);
+			} finally {
+				buffer.release();
+			}
+
+		} else {
+			writeR(data, out);
+		}
+	}
+
+	/*
+	 * Serialize SEXP data directly on the ByteBuffer provided, heap
+	 * or direct, from the current position of the buffer. Raises
+	 * BufferOverflowException if the buffer has insufficient space.
+	 */
+	public static void serializeSEXP(SEXP data,
+									 ByteBuffer target) throws IOException {
+
+		if(fastPathSize(data) >= 0) {
+			RenjinVectorFormat.write(data, target);
+		} else {
+			RenjinSerializationBuffer buffer =
+					RenjinSerializationBuffer.acquire();
+			try {
+				writeR(data, buffer);
+				target.put(buffer.array(), 0, buffer.size());
+			} finally {
+				buffer.release();
+			}
+		}
+	}
+
+	/*
+	 * Deserialize SEXP data, decoding data compressed by codec. Codec
+	 * failures are raised as UncheckedIOException rather than being
+	 * mistaken for R data that failed to deserialize.
+	 */
+	public static SEXP deserializeSEXP(byte[] data, RenjinCodec codec) {
+
+		byte[] decoded;
+		try {
+			decoded = decodePayload(data, codec);
+		} catch(IOException iox) {
+			throw new UncheckedIOException(iox);
+		}
+		return deserializeSEXP(decoded);
+	}
+
+	/*
+	 * Serialize SEXP data, compressing serialized data using codec
+	 * if at least threshold bytes in size. Codec failures are raised
+	 * as UncheckedIOException.
+	 */
+	public static byte[] serializeSEXP(SEXP data,
+									   RenjinCodec codec,
+									   int threshold) {
+
+		try {
+			return encodePayload(serializeSEXP(data), codec, threshold);
+		} catch(IOException iox) {
+			throw new UncheckedIOException(iox);
+		}
+	}
+
+	/*
+	 * Compress serialized data using codec if at least threshold bytes
+	 * in size. Compressed data is prefixed by the ENCODED marker, data
+	 * below the threshold, or that does not shrink when compressed, is
+	 * returned unchanged. As R serialized data never starts with the
+	 * ENCODED marker, compressed and uncompressed data can be mixed
+	 * freely on the same task.
+	 */
+	public static byte[] encodePayload(byte[] data,
+									   RenjinCodec codec,
+									   int threshold) throws IOException {
+
+		if(data == null || codec == null || data.length < threshold)
+			return data;
+
+		ByteArrayOutputStream payload =
+			new ByteArrayOutputStream(Math.max(64, data.length / 2));
+		payload.write(ENCODED);
+		codec.encode(data, 0, data.length, payload);
+		return (payload.size() < data.length) ? payload.toByteArray() : data;
+	}
+
+	public static byte[] decodePayload(byte[] data,
+									   RenjinCodec codec) throws IOException {
+
+		if(data == null || data.length == 0 || data[0] != ENCODED)
+			return data;
+		if(codec == null)
+			throw new IOException("R data compressed, codec not specified.");
+
+		return codec.decode(data, 1, data.length - 1);
+	}
+
+	/*
+	 * Marker prefixed on serialized data compressed by a RenjinCodec.
+	 */
+	private static final byte ENCODED = 0x01;
+
+	/*
+	 * Renjin R command to 'refresh' ScriptEngine after use, where
+	 * the ScriptEngine does not support a native reset.
 	 */
-	private transient final String RENJIN_CLEAR = "rm(list = ls())";
+	private static final String RENJIN_CLEAR = "rm(list = ls())";
 
 
 }
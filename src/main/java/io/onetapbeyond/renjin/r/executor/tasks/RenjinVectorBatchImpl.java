@@ -0,0 +1,247 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor.tasks;
+
+import io.onetapbeyond.renjin.r.executor.*;
+import io.onetapbeyond.renjin.r.executor.manager.RenjinManager;
+import io.onetapbeyond.renjin.r.executor.results.RenjinTimingsImpl;
+import static io.onetapbeyond.renjin.r.executor.manager.RenjinMetrics.*;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import javax.script.*;
+import org.renjin.sexp.*;
+
+/*
+ * Concrete implementation of Renjin executor vectorized task batch.
+ *
+ * Instances of {@link RenjinBatch} as generated by the
+ * {@link Renjin} task builder in vectorized mode. The R code is
+ * executed once against columnar inputs, the output is then split
+ * into one {@link RenjinResult} per input record.
+ */
+public class RenjinVectorBatchImpl implements RenjinBatch {
+
+	/*
+	 * Generated SUID for RenjinBatch, generated using serialver.
+	 */
+	private static final long serialVersionUID = -6188720453512371930L;
+
+	/*
+	 * Task executing R code on columnar inputs.
+	 */
+	private final RenjinTaskImpl task;
+
+	/*
+	 * Number of input records, one result generated per record.
+	 */
+	private final int records;
+
+	/*
+	 * Names of the columnar inputs, each result echoes only the
+	 * record on each column.
+	 */
+	private final List<String> columns;
+
+	public RenjinVectorBatchImpl(RenjinTaskImpl task,
+								 int records,
+								 List<String> columns) {
+		this.task = task;
+		this.records = records;
+		this.columns = columns;
+	}
+
+	public List<RenjinResult> execute() {
+
+		List<RenjinResult> results = new ArrayList<RenjinResult>(records);
+		ScriptEngine engine = null;
+		long start = System.nanoTime();
+		RenjinTimingsImpl timings = task.resetTimings();
+
+		try {
+
+			long taskStart = System.currentTimeMillis();
+
+			engine = RenjinManager.POOL.getEngine(timings);
+			SEXP output = task.evaluateGuarded(engine);
+			long timeTaken = System.currentTimeMillis() - taskStart;
+			long encodeStart = System.nanoTime();
+
+			/*
+			 * Split vectorized output into per-record results.
+			 */
+			List<Vector> columnData = columnData();
+			if(output.inherits("data.frame")) {
+
+				ListVector frame = (ListVector) output;
+				if(rows(frame) != records)
+					throw mismatch(rows(frame));
+				for(int i = 0; i < records; i++) {
+					results.add(task.success(row(frame, i), timeTaken,
+										echo(columnData, i), null));
+				}
+
+			} else if(output instanceof Vector) {
+
+				Vector vector = (Vector) output;
+				if(vector.length() != records)
+					throw mismatch(vector.length());
+				for(int i = 0; i < records; i++) {
+					results.add(task.success(element(vector, i), timeTaken,
+										echo(columnData, i), null));
+				}
+
+			} else {
+				throw mismatch(output.length());
+			}
+			task.recordEncode(System.nanoTime() - encodeStart);
+
+		} catch(Throwable cause) {
+
+			results.clear();
+			List<Vector> columnData = null;
+			try {
+				columnData = columnData();
+			} catch(RuntimeException rex) {}
+			for(int i = 0; i < records; i++) {
+				results.add(task.failure(cause, echo(columnData, i), null));
+			}
+
+			/*
+			 * Evict engine still evaluating timed out or cancelled code.
+			 */
+			if(RenjinTaskImpl.abandoned(cause)) {
+				task.evictEngine(engine);
+				engine = null;
+			}
+
+		} finally {
+
+			if(engine != null) {
+				try {
+					RenjinTaskImpl.clearEngine(engine, timings);
+				} finally {
+					RenjinManager.POOL.releaseEngine(engine);
+				}
+			}
+
+			task.endTimings();
+			RenjinTaskImpl.recordOutcome(results.isEmpty() ? null :
+							results.get(0), System.nanoTime() - start);
+		}
+
+		return results;
+	}
+
+	public CompletableFuture<List<RenjinResult>> executeAsync() {
+		return RenjinService.defaultService().submit(this);
+	}
+
+	public String toString() {
+		return "RenjinBatch: [ vectorized, records=" + records + " ]";
+	}
+
+	/*
+	 * Number of rows in data.frame.
+	 */
+	private static int rows(ListVector frame) {
+		return (frame.length() == 0) ? 0 :
+			frame.getElementAsSEXP(0).length();
+	}
+
+	/*
+	 * Extract row from data.frame as named list.
+	 */
+	private static SEXP row(ListVector frame, int index) {
+
+		ListVector.NamedBuilder row = ListVector.newNamedBuilder();
+		for(int col = 0; col < frame.length(); col++) {
+			row.add(frame.getName(col),
+				element((Vector) frame.getElementAsSEXP(col), index));
+		}
+		return row.build();
+	}
+
+	/*
+	 * Extract element from vector, keeping the non-positional
+	 * attributes on the vector, such as factor levels and class,
+	 * so factors, dates and other classed values keep their meaning.
+	 */
+	static SEXP element(Vector vector, int index) {
+
+		SEXP value = vector.getElementAsSEXP(index);
+		AttributeMap attributes = vector.getAttributes();
+		if(attributes == null || attributes == AttributeMap.EMPTY)
+			return value;
+
+		AttributeMap.Builder kept = AttributeMap.builder();
+		boolean keep = false;
+		for(PairList.Node node : attributes.asPairList().nodes()) {
+			if(!POSITIONAL.contains(node.getTag().getPrintName())) {
+				kept.set(node.getTag(), node.getValue());
+				keep = true;
+			}
+		}
+		return (keep && value instanceof AbstractSEXP) ?
+			((AbstractSEXP) value).setAttributes(kept.build()) : value;
+	}
+
+	/*
+	 * Attributes describing the layout of a vector, meaningless
+	 * on a single element.
+	 */
+	private static final Set<String> POSITIONAL = new HashSet<String>(
+		Arrays.asList("names", "dim", "dimnames", "row.names", "tsp"));
+
+	/*
+	 * Columnar input data, null if inputs are not echoed.
+	 */
+	private List<Vector> columnData() {
+		if(!task.echoInputs())
+			return null;
+		List<Vector> data = new ArrayList<Vector>(columns.size());
+		for(String column : columns) {
+			data.add((Vector) task.sexpInput(column));
+		}
+		return data;
+	}
+
+	/*
+	 * Record on each column echoed on the result for that record,
+	 * rather than every column in full.
+	 */
+	private Map<String,Object> echo(List<Vector> columnData, int index) {
+		if(columnData == null)
+			return null;
+		Map<String,Object> record = new HashMap<String,Object>();
+		for(int col = 0; col < columns.size(); col++) {
+			record.put(columns.get(col), element(columnData.get(col), index));
+		}
+		return record;
+	}
+
+	private RenjinException mismatch(int length) {
+		return new RenjinException("Vectorized R output length " +
+			length + " does not match input record count " + records + ".");
+	}
+
+}
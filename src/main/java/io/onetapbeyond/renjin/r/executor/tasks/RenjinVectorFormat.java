@@ -0,0 +1,448 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor.tasks;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import org.renjin.sexp.*;
+
+/*
+ * Binary fast path for serialization of the common atomic
+ * vector types: DoubleArrayVector, IntArrayVector,
+ * LogicalArrayVector and StringArrayVector.
+ *
+ * Vector data is written straight into a ByteBuffer and read
+ * back with a single bulk copy, avoiding the general R
+ * serialization stream. Each vector is written as a magic
+ * header, a type byte, the vector length and the vector
+ * attributes, if any, as an R serialized pairlist, followed
+ * by the vector elements in little-endian order. String
+ * elements are written as UTF-8, length prefixed, with a
+ * length of -1 for NA.
+ *
+ * The magic header never matches R serialized data, nor the
+ * marker on data compressed by a RenjinCodec, so fast path
+ * and R serialized data can be distinguished on read.
+ *
+ * Vectors whose encoding would exceed the maximum array size,
+ * or whose attributes fail to serialize, are rejected with an
+ * IllegalArgumentException before anything is written, so
+ * callers can fall back to R serialization.
+ */
+public final class RenjinVectorFormat {
+
+	private static final byte[] MAGIC = { 'R', 'J', 'V', '1' };
+
+	private static final byte DOUBLE = 1;
+	private static final byte INT = 2;
+	private static final byte LOGICAL = 3;
+	private static final byte STRING = 4;
+
+	/*
+	 * Magic header, type byte, vector length and attributes length.
+	 */
+	private static final int HEADER_SIZE = MAGIC.length + 1 + 4 + 4;
+
+	/*
+	 * Chunk buffer size used when reading from a channel.
+	 */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	/*
+	 * Largest encoding the fast path writes, the maximum array size.
+	 */
+	private static final long MAX_SIZE = Integer.MAX_VALUE - 8;
+
+	private RenjinVectorFormat() {}
+
+	/*
+	 * Returns true if data is supported by the fast path.
+	 */
+	public static boolean supports(SEXP data) {
+		Class<?> type = (data == null) ? null : data.getClass();
+		return type == DoubleArrayVector.class ||
+			   type == IntArrayVector.class ||
+			   type == LogicalArrayVector.class ||
+			   type == StringArrayVector.class;
+	}
+
+	/*
+	 * Returns true if serialized data was written by the fast path.
+	 */
+	public static boolean matches(byte[] data) {
+		return (data != null && data.length >= HEADER_SIZE) &&
+			   matchesMagic(data);
+	}
+
+	/*
+	 * Returns true if data starts with the fast path magic header.
+	 */
+	public static boolean matchesMagic(byte[] data) {
+		if(data == null || data.length < MAGIC.length)
+			return false;
+		for(int i = 0; i < MAGIC.length; i++) {
+			if(data[i] != MAGIC[i])
+				return false;
+		}
+		return true;
+	}
+
+	/*
+	 * Serialize data into an exactly sized byte array.
+	 */
+	public static byte[] write(SEXP data) {
+		Encoding encoding = new Encoding(data);
+		byte[] serialized = new byte[encoding.size()];
+		encoding.writeTo(ByteBuffer.wrap(serialized));
+		return serialized;
+	}
+
+	/*
+	 * Serialize data into the ByteBuffer provided, heap or direct,
+	 * which must have at least size(data) bytes remaining.
+	 */
+	public static void write(SEXP data, ByteBuffer target) {
+		new Encoding(data).writeTo(target);
+	}
+
+	/*
+	 * Returns the serialized size of data in bytes.
+	 */
+	public static int size(SEXP data) {
+		return new Encoding(data).size();
+	}
+
+	public static SEXP read(byte[] data) {
+		return read(ByteBuffer.wrap(data));
+	}
+
+	/*
+	 * Deserialize data from the ByteBuffer provided, from the
+	 * current position of the buffer.
+	 */
+	public static SEXP read(ByteBuffer source) {
+
+		ByteBuffer buf = source.slice().order(ByteOrder.LITTLE_ENDIAN);
+		buf.position(MAGIC.length);
+		byte type = buf.get();
+		int length = buf.getInt();
+
+		AttributeMap attributes = AttributeMap.EMPTY;
+		int attributesSize = buf.getInt();
+		if(attributesSize > 0) {
+			byte[] serializedAttributes = new byte[attributesSize];
+			buf.get(serializedAttributes);
+			attributes = attributes(
+				RenjinTaskImpl.deserializeSEXP(serializedAttributes));
+		}
+
+		SEXP vector;
+		switch(type) {
+			case DOUBLE: {
+				double[] values = new double[length];
+				buf.asDoubleBuffer().get(values);
+				buf.position(buf.position() + length * 8);
+				vector = new DoubleArrayVector(values, attributes);
+				break;
+			}
+			case INT: {
+				int[] values = new int[length];
+				buf.asIntBuffer().get(values);
+				buf.position(buf.position() + length * 4);
+				vector = new IntArrayVector(values, attributes);
+				break;
+			}
+			case LOGICAL: {
+				int[] values = new int[length];
+				buf.asIntBuffer().get(values);
+				buf.position(buf.position() + length * 4);
+				vector = new LogicalArrayVector(values, attributes);
+				break;
+			}
+			case STRING: {
+				String[] values = new String[length];
+				for(int i = 0; i < length; i++) {
+					int size = buf.getInt();
+					if(size >= 0) {
+						if(buf.hasArray()) {
+							values[i] = new String(buf.array(),
+								buf.arrayOffset() + buf.position(),
+								size, StandardCharsets.UTF_8);
+							buf.position(buf.position() + size);
+						} else {
+							byte[] value = new byte[size];
+							buf.get(value);
+							values[i] = new String(value, StandardCharsets.UTF_8);
+						}
+					}
+				}
+				vector = new StringArrayVector(values, attributes);
+				break;
+			}
+			default:
+				throw new IllegalArgumentException(
+					"Unsupported R vector type " + type + ".");
+		}
+
+		source.position(source.position() + buf.position());
+		return vector;
+	}
+
+	/*
+	 * Deserialize data streamed from the ReadableByteChannel provided,
+	 * reading through a fixed size chunk buffer so the serialized form
+	 * of the data is never held in memory in full.
+	 */
+	public static SEXP read(ReadableByteChannel source) throws IOException {
+
+		ByteBuffer buf = ByteBuffer.allocate(CHUNK_SIZE)
+								   .order(ByteOrder.LITTLE_ENDIAN);
+		buf.limit(0);
+
+		fill(source, buf, HEADER_SIZE);
+		buf.position(MAGIC.length);
+		byte type = buf.get();
+		int length = buf.getInt();
+
+		AttributeMap attributes = AttributeMap.EMPTY;
+		int attributesSize = buf.getInt();
+		if(attributesSize > 0) {
+			attributes = attributes(RenjinTaskImpl.deserializeSEXP(
+				readBytes(source, buf, attributesSize)));
+		}
+
+		switch(type) {
+			case DOUBLE: {
+				double[] values = new double[length];
+				for(int read = 0; read < length; ) {
+					fill(source, buf, 8);
+					int n = Math.min(buf.remaining() / 8, length - read);
+					buf.asDoubleBuffer().get(values, read, n);
+					buf.position(buf.position() + n * 8);
+					read += n;
+				}
+				return new DoubleArrayVector(values, attributes);
+			}
+			case INT:
+			case LOGICAL: {
+				int[] values = new int[length];
+				for(int read = 0; read < length; ) {
+					fill(source, buf, 4);
+					int n = Math.min(buf.remaining() / 4, length - read);
+					buf.asIntBuffer().get(values, read, n);
+					buf.position(buf.position() + n * 4);
+					read += n;
+				}
+				return (type == INT) ?
+					new IntArrayVector(values, attributes) :
+					new LogicalArrayVector(values, attributes);
+			}
+			case STRING: {
+				String[] values = new String[length];
+				for(int i = 0; i < length; i++) {
+					fill(source, buf, 4);
+					int size = buf.getInt();
+					if(size >= 0) {
+						values[i] = new String(readBytes(source, buf, size),
+											   StandardCharsets.UTF_8);
+					}
+				}
+				return new StringArrayVector(values, attributes);
+			}
+			default:
+				throw new IllegalArgumentException(
+					"Unsupported R vector type " + type + ".");
+		}
+	}
+
+	/*
+	 * Ensure at least n bytes remain on the chunk buffer,
+	 * where n does not exceed the chunk buffer capacity.
+	 */
+	private static void fill(ReadableByteChannel source,
+							 ByteBuffer buf,
+							 int n) throws IOException {
+		if(buf.remaining() >= n)
+			return;
+		buf.compact();
+		while(buf.position() < n) {
+			if(source.read(buf) < 0)
+				throw new EOFException("Truncated R vector data.");
+		}
+		buf.flip();
+	}
+
+	private static byte[] readBytes(ReadableByteChannel source,
+									ByteBuffer buf,
+									int size) throws IOException {
+		byte[] value = new byte[size];
+		int buffered = Math.min(size, buf.remaining());
+		buf.get(value, 0, buffered);
+		ByteBuffer rest = ByteBuffer.wrap(value, buffered, size - buffered);
+		while(rest.hasRemaining()) {
+			if(source.read(rest) < 0)
+				throw new EOFException("Truncated R vector data.");
+		}
+		return value;
+	}
+
+	/*
+	 * Rebuild vector attributes from deserialized pairlist.
+	 */
+	private static AttributeMap attributes(SEXP pairList) {
+
+		if(!(pairList instanceof PairList.Node))
+			return AttributeMap.EMPTY;
+
+		AttributeMap.Builder builder = AttributeMap.builder();
+		for(PairList.Node node : ((PairList.Node) pairList).nodes()) {
+			builder.set(node.getTag(), node.getValue());
+		}
+		return builder.build();
+	}
+
+	/*
+	 * Fast path encoding of a single vector, sized ahead
+	 * of writing so the target can be allocated exactly.
+	 */
+	private static class Encoding {
+
+		private final SEXP data;
+		private final byte type;
+		private final byte[] attributes;
+		private byte[][] strings;
+		private long size;
+
+		Encoding(SEXP data) {
+
+			this.data = data;
+
+			if(data instanceof DoubleArrayVector)
+				type = DOUBLE;
+			else if(data instanceof IntArrayVector)
+				type = INT;
+			else if(data instanceof LogicalArrayVector)
+				type = LOGICAL;
+			else if(data instanceof StringArrayVector)
+				type = STRING;
+			else
+				throw new IllegalArgumentException(
+					"Unsupported R vector type " + data.getClass() + ".");
+
+			AttributeMap attributeMap = data.getAttributes();
+			if(attributeMap == null || attributeMap == AttributeMap.EMPTY) {
+				attributes = null;
+			} else {
+				attributes =
+					RenjinTaskImpl.serializeSEXP(attributeMap.asPairList());
+				if(attributes == null)
+					throw new IllegalArgumentException(
+						"R vector attributes could not be serialized.");
+			}
+
+			int length = data.length();
+			size = HEADER_SIZE + ((attributes == null) ? 0 : attributes.length);
+
+			switch(type) {
+				case DOUBLE:
+					size += length * 8L;
+					break;
+				case INT:
+				case LOGICAL:
+					size += length * 4L;
+					break;
+				default:
+					StringVector vector = (StringVector) data;
+					strings = new byte[length][];
+					for(int i = 0; i < length; i++) {
+						String value = vector.getElementAsString(i);
+						size += 4;
+						if(value != null) {
+							strings[i] = value.getBytes(StandardCharsets.UTF_8);
+							size += strings[i].length;
+						}
+						if(size > MAX_SIZE)
+							break;
+					}
+			}
+
+			if(size > MAX_SIZE)
+				throw new IllegalArgumentException(
+					"R vector too large for fast path encoding.");
+		}
+
+		int size() {
+			return (int) size;
+		}
+
+		void writeTo(ByteBuffer target) {
+
+			ByteOrder order = target.order();
+			target.order(ByteOrder.LITTLE_ENDIAN);
+
+			try {
+				target.put(MAGIC);
+				target.put(type);
+				target.putInt(data.length());
+				if(attributes == null) {
+					target.putInt(0);
+				} else {
+					target.putInt(attributes.length);
+					target.put(attributes);
+				}
+
+				switch(type) {
+					case DOUBLE: {
+						double[] values =
+							((DoubleArrayVector) data).toDoubleArrayUnsafe();
+						target.asDoubleBuffer().put(values, 0, data.length());
+						target.position(target.position() + data.length() * 8);
+						break;
+					}
+					case INT: {
+						int[] values = ((IntArrayVector) data).toIntArrayUnsafe();
+						target.asIntBuffer().put(values, 0, data.length());
+						target.position(target.position() + data.length() * 4);
+						break;
+					}
+					case LOGICAL: {
+						LogicalVector vector = (LogicalVector) data;
+						for(int i = 0; i < data.length(); i++)
+							target.putInt(vector.getElementAsRawLogical(i));
+						break;
+					}
+					default: {
+						for(byte[] value : strings) {
+							if(value == null) {
+								target.putInt(-1);
+							} else {
+								target.putInt(value.length);
+								target.put(value);
+							}
+						}
+					}
+				}
+			} finally {
+				target.order(order);
+			}
+		}
+	}
+
+}
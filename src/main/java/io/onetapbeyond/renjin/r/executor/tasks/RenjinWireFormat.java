@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor.tasks;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+
+/*
+ * Compact, versioned wire format shared by the Externalizable
+ * {@link RenjinTask} and {@link RenjinResult} implementations.
+ *
+ * Each instance is written as a format version byte, a flags
+ * int and the instance fields in a fixed order. Strings and
+ * byte arrays are length prefixed, with a length of -1 for null.
+ * Input maps are written as an entry count followed by name and
+ * value per entry, serialized SEXP values as byte arrays and all
+ * other values using Java serialization.
+ */
+public final class RenjinWireFormat {
+
+	/*
+	 * Current wire format version. Version 2 widened the flags
+	 * from a byte to an int, leaving room for new flags.
+	 */
+	public static final byte VERSION = 2;
+
+	/*
+	 * Chunk size used when writing streams.
+	 */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	private RenjinWireFormat() {}
+
+	public static void writeVersion(ObjectOutput out) throws IOException {
+		out.writeByte(VERSION);
+	}
+
+	public static void readVersion(ObjectInput in,
+								   String type) throws IOException {
+		byte version = in.readByte();
+		if(version != VERSION) {
+			throw new InvalidClassException(type,
+				"unsupported wire format version " + version);
+		}
+	}
+
+	public static void writeString(ObjectOutput out,
+								   String value) throws IOException {
+		writeBytes(out, (value == null) ? null :
+							value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public static String readString(ObjectInput in) throws IOException {
+		byte[] value = readBytes(in);
+		return (value == null) ? null :
+							new String(value, StandardCharsets.UTF_8);
+	}
+
+	public static void writeBytes(ObjectOutput out,
+								  byte[] value) throws IOException {
+		if(value == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(value.length);
+			out.write(value);
+		}
+	}
+
+	public static byte[] readBytes(ObjectInput in) throws IOException {
+		int length = in.readInt();
+		if(length < 0)
+			return null;
+		byte[] value = new byte[length];
+		in.readFully(value);
+		return value;
+	}
+
+	/*
+	 * Write the contents of an InputStream as a sequence of length
+	 * prefixed chunks, terminated by a zero length chunk, so the
+	 * contents need never be held in memory in full.
+	 */
+	public static void writeStream(ObjectOutput out,
+								   InputStream source) throws IOException {
+		byte[] chunk = new byte[CHUNK_SIZE];
+		int read;
+		while((read = source.read(chunk)) != -1) {
+			if(read > 0) {
+				out.writeInt(read);
+				out.write(chunk, 0, read);
+			}
+		}
+		out.writeInt(0);
+	}
+
+	/*
+	 * Read stream contents written by writeStream. The chunks are
+	 * held as read and replayed in sequence, so the contents are
+	 * held in memory once, without copying into a single array.
+	 */
+	public static InputStream readStream(ObjectInput in) throws IOException {
+		List<InputStream> chunks = new ArrayList<InputStream>();
+		int size;
+		while((size = in.readInt()) > 0) {
+			byte[] chunk = new byte[size];
+			in.readFully(chunk);
+			chunks.add(new ByteArrayInputStream(chunk));
+		}
+		return new SequenceInputStream(Collections.enumeration(chunks));
+	}
+
+	/*
+	 * Write input map, values in serialized form are
+	 * written as byte arrays.
+	 */
+	public static void writeInputs(ObjectOutput out,
+								   Map<String,Object> inputs,
+								   boolean serialized) throws IOException {
+		if(inputs == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(inputs.size());
+			for (Map.Entry<String, Object> pair : inputs.entrySet()) {
+				writeString(out, pair.getKey());
+				if(serialized)
+					writeBytes(out, (byte[]) pair.getValue());
+				else
+					out.writeObject(pair.getValue());
+			}
+		}
+	}
+
+	public static Map<String,Object> readInputs(ObjectInput in,
+								boolean serialized)
+							throws IOException, ClassNotFoundException {
+		int size = in.readInt();
+		if(size < 0)
+			return null;
+		Map<String,Object> inputs = new HashMap<String,Object>(
+									Math.max(16, (int) (size / 0.75f) + 1));
+		for(int i = 0; i < size; i++) {
+			String name = readString(in);
+			inputs.put(name, serialized ? readBytes(in) : in.readObject());
+		}
+		return inputs;
+	}
+
+}
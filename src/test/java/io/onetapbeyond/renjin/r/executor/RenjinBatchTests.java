@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.renjin.sexp.*;
+
+/*
+ * RenjinBatchTests
+ *
+ * Tests renjin-r-executor support for executing batches
+ * of R tasks on a single ScriptEngine.
+ */
+public class RenjinBatchTests {
+
+    @Test
+    public void testBatchOfInputSets() throws RenjinException {
+
+        List<Map<String,Object>> inputSets = new ArrayList<Map<String,Object>>();
+        for(int i = 0; i < 5; i++) {
+            Map<String,Object> inputSet = new HashMap<String,Object>();
+            inputSet.put("x", new DoubleArrayVector(i));
+            inputSets.add(inputSet);
+        }
+
+        RenjinBatch rBatch = Renjin.R().code("x * m")
+                                       .input("m", 10)
+                                       .buildBatch(inputSets);
+        List<RenjinResult> rResults = rBatch.execute();
+
+        assertEquals(5, rResults.size());
+        for(int i = 0; i < 5; i++) {
+            RenjinResult rResult = rResults.get(i);
+            assertTrue(rResult.success());
+            assertEquals(i * 10,
+                ((org.renjin.sexp.Vector) rResult.output()).getElementAsDouble(0), 0.0);
+            assertEquals(10, rResult.input().get("m"));
+        }
+    }
+
+    @Test
+    public void testBatchOfTasks() throws Exception {
+
+        List<RenjinTask> rTasks = new ArrayList<RenjinTask>();
+        rTasks.add(Renjin.R().code("x <- n").input("n", 1).build());
+        rTasks.add(Renjin.R().code("y <- z").build());
+        rTasks.add(Renjin.R().code("n + 1").input("n", 2).build());
+
+        List<RenjinResult> rResults =
+            Renjin.batch(rTasks).executeAsync().get(120, TimeUnit.SECONDS);
+
+        assertEquals(3, rResults.size());
+        assertTrue(rResults.get(0).success());
+        // Failed task does not fail the remainder of the batch.
+        assertFalse(rResults.get(1).success());
+        assertNotNull(rResults.get(1).cause());
+        assertTrue(rResults.get(2).success());
+        assertEquals(3,
+            ((org.renjin.sexp.Vector) rResults.get(2).output()).getElementAsDouble(0), 0.0);
+    }
+
+    @Test
+    public void testBatchInputsNotShared() throws Exception {
+
+        List<Map<String,Object>> inputSets = new ArrayList<Map<String,Object>>();
+        Map<String,Object> first = new HashMap<String,Object>();
+        first.put("x", 1);
+        first.put("y", 2);
+        inputSets.add(first);
+        inputSets.add(Collections.<String,Object>singletonMap("x", 3));
+
+        List<RenjinResult> rResults = Renjin.R()
+                                            .code("exists('y')")
+                                            .buildBatch(inputSets)
+                                            .execute();
+
+        assertEquals(1, ((LogicalVector) rResults.get(0).output()).getElementAsRawLogical(0));
+        // Input y on the first task is not visible to the second task.
+        assertEquals(0, ((LogicalVector) rResults.get(1).output()).getElementAsRawLogical(0));
+    }
+
+    @Test
+    public void testEmptyBatch() throws Exception {
+
+        List<RenjinResult> rResults = Renjin.R()
+                                            .code("x")
+                                            .buildBatch(new ArrayList<Map<String,Object>>())
+                                            .execute();
+        assertTrue(rResults.isEmpty());
+    }
+
+    @Test(expected=RenjinException.class)
+    public void testDirtyBatchBuilder() throws RenjinException {
+        Renjin builder = Renjin.R().code("x");
+        builder.build();
+        // "Dirty" builder should raise RenjinException.
+        builder.buildBatch(new ArrayList<Map<String,Object>>());
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import io.onetapbeyond.renjin.r.executor.manager.RenjinManager;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.script.*;
+
+/*
+ * RenjinBoundedPoolTests
+ *
+ * Tests renjin-r-executor fair, bounded acquisition of Renjin
+ * ScriptEngines. Runs in a dedicated test JVM with a pool size
+ * limit of 2 and an acquire timeout of 1000ms, see build.gradle.
+ */
+public class RenjinBoundedPoolTests {
+
+    private static final RenjinManager POOL = RenjinManager.POOL;
+
+    @Before
+    public void checkConfiguration() throws InterruptedException {
+        assertEquals(2, POOL.maxEngines());
+        assertTrue(POOL.awaitReady(120, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBlocksUntilEngineReleased() throws Exception {
+
+        ScriptEngine first = POOL.getEngine(120, TimeUnit.SECONDS);
+        ScriptEngine second = POOL.getEngine(120, TimeUnit.SECONDS);
+        ExecutorService waiter = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<ScriptEngine> waiting =
+                waiter.submit(() -> POOL.getEngine(60, TimeUnit.SECONDS));
+
+            // All engines checked out, caller blocks.
+            try {
+                waiting.get(500, TimeUnit.MILLISECONDS);
+                fail("getEngine returned while pool exhausted");
+            } catch(TimeoutException tex) {}
+
+            // Released engine is handed to the waiting caller.
+            POOL.releaseEngine(first);
+            first = null;
+            ScriptEngine acquired = waiting.get(60, TimeUnit.SECONDS);
+            assertNotNull(acquired);
+            POOL.releaseEngine(acquired);
+        } finally {
+            waiter.shutdownNow();
+            POOL.releaseEngine(first);
+            POOL.releaseEngine(second);
+        }
+    }
+
+    @Test
+    public void testAcquireTimeout() throws Exception {
+
+        ScriptEngine first = POOL.getEngine(120, TimeUnit.SECONDS);
+        ScriptEngine second = POOL.getEngine(120, TimeUnit.SECONDS);
+
+        try {
+            long start = System.nanoTime();
+            try {
+                POOL.getEngine();
+                fail("getEngine succeeded on exhausted pool");
+            } catch(RenjinException rex) {
+                // Default acquire timeout set to 1000ms for this JVM.
+                assertTrue(TimeUnit.NANOSECONDS.toMillis(
+                            System.nanoTime() - start) >= 900);
+            }
+
+            // Task execution fails on exhausted pool rather than blocking.
+            RenjinResult rResult = Renjin.R().code("1").build().execute();
+            assertFalse(rResult.success());
+            assertTrue(rResult.cause() instanceof RenjinException);
+        } finally {
+            POOL.releaseEngine(first);
+            POOL.releaseEngine(second);
+        }
+    }
+
+    @Test
+    public void testEvictedEnginesReplenished() throws Exception {
+
+        ScriptEngine first = POOL.getEngine(120, TimeUnit.SECONDS);
+        ScriptEngine second = POOL.getEngine(120, TimeUnit.SECONDS);
+        POOL.evictEngine(first);
+        POOL.evictEngine(second);
+
+        // Pool topped back up to the default minimum of one idle engine.
+        long deadline = System.currentTimeMillis() + 120000;
+        while((POOL.idleEngines() < 1 ||
+               POOL.engines() != POOL.idleEngines()) &&
+                        System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(POOL.idleEngines() >= 1);
+        assertEquals(POOL.engines(), POOL.idleEngines());
+    }
+
+    @Test
+    public void testConcurrentAcquireBounded() throws Exception {
+
+        int threads = 8;
+        AtomicInteger held = new AtomicInteger();
+        AtomicInteger maxHeld = new AtomicInteger();
+        AtomicInteger maxEngines = new AtomicInteger();
+        Set<ScriptEngine> distinct =
+            Collections.newSetFromMap(new ConcurrentHashMap<ScriptEngine,Boolean>());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+
+        try {
+            for(int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    int acquired = 0;
+                    for(int i = 0; i < 20; i++) {
+                        ScriptEngine engine =
+                            POOL.getEngine(120, TimeUnit.SECONDS);
+                        try {
+                            maxHeld.accumulateAndGet(held.incrementAndGet(),
+                                                     Math::max);
+                            maxEngines.accumulateAndGet(POOL.engines(),
+                                                        Math::max);
+                            distinct.add(engine);
+                            acquired++;
+                        } finally {
+                            held.decrementAndGet();
+                            POOL.releaseEngine(engine);
+                        }
+                    }
+                    return acquired;
+                }));
+            }
+            start.countDown();
+
+            for(Future<Integer> future : futures) {
+                assertEquals(20, future.get(300, TimeUnit.SECONDS).intValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(maxHeld.get() <= POOL.maxEngines());
+        assertTrue(maxEngines.get() <= POOL.maxEngines());
+        assertTrue(distinct.size() <= POOL.maxEngines());
+        assertEquals(POOL.engines(), POOL.idleEngines());
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import io.onetapbeyond.renjin.r.executor.tasks.RenjinTaskImpl;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import java.io.*;
+import java.util.*;
+import org.renjin.sexp.*;
+
+/*
+ * RenjinCompressionTests
+ *
+ * Tests renjin-r-executor compression of serialized
+ * SEXP data on RenjinTask and RenjinResult.
+ */
+@RunWith(Parameterized.class)
+public class RenjinCompressionTests {
+
+    private RenjinCodec codec;
+
+    public RenjinCompressionTests(RenjinCodec codec) {
+        this.codec = codec;
+    }
+
+    /*
+     * JUnit Parameterized Tests
+     */
+    @Parameters
+    public static Collection<Object[]> getTestParameters() {
+        return Arrays.asList(new Object[][] {
+                { RenjinCodec.NONE }, { RenjinCodec.GZIP },
+                { RenjinCodec.DEFLATE }, { RenjinCodec.FAST }
+        });
+    }
+
+    @Test
+    public void testCodecRoundTrip() throws Exception {
+
+        byte[] data = new byte[64 * 1024];
+        for(int i = 0; i < data.length; i++)
+            data[i] = (byte) (i % 7);
+
+        byte[] encoded = codec.encode(data);
+        assertArrayEquals(data, codec.decode(encoded));
+        if(codec != RenjinCodec.NONE)
+            assertTrue(encoded.length < data.length);
+    }
+
+    @Test
+    public void testCodecRangeRoundTrip() throws Exception {
+
+        byte[] data = new byte[16 * 1024];
+        for(int i = 0; i < data.length; i++)
+            data[i] = (byte) (i % 5);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0x7F);
+        codec.encode(data, 1024, data.length - 1024, out);
+        byte[] encoded = out.toByteArray();
+        assertArrayEquals(Arrays.copyOfRange(data, 1024, data.length),
+                          codec.decode(encoded, 1, encoded.length - 1));
+    }
+
+    @Test
+    public void testIncompressiblePayloadUncompressed() throws Exception {
+
+        byte[] data = new byte[4096];
+        new Random(42).nextBytes(data);
+        data[0] = 0x58;
+
+        byte[] payload = RenjinTaskImpl.encodePayload(data, codec, 0);
+        assertSame(data, payload);
+        assertSame(data, RenjinTaskImpl.decodePayload(payload, codec));
+    }
+
+    @Test(expected=UncheckedIOException.class)
+    public void testCodecFailurePropagated() throws Exception {
+
+        double[] values = new double[1000];
+        byte[] payload = RenjinTaskImpl.serializeSEXP(
+                            new DoubleArrayVector(values), RenjinCodec.GZIP, 0);
+        payload[1] ^= 0x5A;
+        RenjinTaskImpl.deserializeSEXP(payload, RenjinCodec.GZIP);
+    }
+
+    @Test
+    public void testCompressedTaskAndResultRoundTrip() throws Exception {
+
+        double[] values = new double[10000];
+        Arrays.fill(values, 1.5);
+        SEXP data = new DoubleArrayVector(values);
+
+        RenjinTask rTask = Renjin.R()
+                                 .code("x * 2")
+                                 .input("x", data)
+                                 .compress(codec, 0)
+                                 .build();
+
+        RenjinResult rResult = RenjinSerializationTests.roundTrip(
+            RenjinSerializationTests.roundTrip(rTask).execute());
+
+        assertTrue(rResult.success());
+        assertEquals(values.length, rResult.output().length());
+        assertEquals(3.0, ((DoubleVector) rResult.output())
+                                .getElementAsDouble(0), 0.0);
+        assertEquals(data, rResult.input().get("x"));
+    }
+
+    @Test
+    public void testBelowThresholdUncompressed() throws Exception {
+
+        RenjinTask rTask = Renjin.R()
+                                 .compress(codec, Integer.MAX_VALUE)
+                                 .code("sum(x)")
+                                 .input("x", new DoubleArrayVector(1,2,3))
+                                 .build();
+
+        RenjinResult rResult = RenjinSerializationTests.roundTrip(
+            rTask.execute());
+
+        assertTrue(rResult.success());
+        assertEquals(6.0, ((DoubleVector) rResult.output())
+                                .getElementAsDouble(0), 0.0);
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import io.onetapbeyond.renjin.r.executor.tasks.RenjinTaskImpl;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.renjin.sexp.*;
+
+/*
+ * RenjinConcurrentSerializationTests
+ *
+ * Stress tests renjin-r-executor SEXP serialization and
+ * deserialization from many threads at once, more threads
+ * than the pooled serialization contexts.
+ */
+public class RenjinConcurrentSerializationTests {
+
+    private static final int THREADS = 16;
+    private static final int ITERATIONS = 50;
+
+    @Test
+    public void testConcurrentRoundTrips() throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+
+        try {
+            for(int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    int verified = 0;
+                    for(int i = 0; i < ITERATIONS; i++) {
+                        // List values are serialized by the R serializer.
+                        SEXP data = new ListVector(
+                                        new DoubleArrayVector(thread, i),
+                                        new StringArrayVector("t" + thread));
+                        byte[] serialized = RenjinTaskImpl.serializeSEXP(data);
+                        assertNotNull(serialized);
+                        assertEquals(data,
+                            RenjinTaskImpl.deserializeSEXP(serialized));
+
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        RenjinTaskImpl.serializeSEXP(data, out);
+                        assertEquals(data, RenjinTaskImpl.deserializeSEXP(
+                            new ByteArrayInputStream(out.toByteArray())));
+                        verified++;
+                    }
+                    return verified;
+                }));
+            }
+            start.countDown();
+
+            for(Future<Integer> future : futures) {
+                assertEquals(ITERATIONS, future.get(300, TimeUnit.SECONDS).intValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentRegistration() throws Exception {
+
+        SEXP data = new ListVector(new IntArrayVector(1, 2, 3),
+                                   new StringArrayVector("shared"));
+        String expected = Renjin.register(data);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<Future<String>>();
+
+        try {
+            for(int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    String handle = null;
+                    for(int i = 0; i < ITERATIONS; i++) {
+                        handle = Renjin.register(new ListVector(
+                                        new IntArrayVector(1, 2, 3),
+                                        new StringArrayVector("shared")));
+                    }
+                    return handle;
+                }));
+            }
+            start.countDown();
+
+            // Serialization is deterministic under contention.
+            for(Future<String> future : futures) {
+                assertEquals(expected, future.get(300, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+            Renjin.deregister(expected);
+        }
+    }
+
+}
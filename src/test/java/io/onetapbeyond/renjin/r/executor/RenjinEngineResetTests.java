@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import javax.script.*;
+import org.renjin.sexp.*;
+import io.onetapbeyond.renjin.r.executor.manager.RenjinManager;
+import io.onetapbeyond.renjin.r.executor.manager.RenjinMetrics;
+
+/*
+ * RenjinEngineResetTests
+ *
+ * Tests renjin-r-executor reset of Renjin ScriptEngines
+ * between task executions.
+ */
+public class RenjinEngineResetTests {
+
+    @Test
+    public void testResetRemovesHiddenBindings() throws Exception {
+
+        ScriptEngine engine = Renjin.scriptEngine();
+
+        RenjinResult rResult = Renjin.R()
+                                     .code(".hidden <- 42; visible <- 1; TRUE")
+                                     .build(engine, true)
+                                     .execute();
+        assertTrue(rResult.success());
+
+        rResult = Renjin.R()
+                        .code("exists('.hidden') || exists('visible')")
+                        .build(engine, true)
+                        .execute();
+        assertTrue(rResult.success());
+        assertEquals(0, ((LogicalVector) rResult.output()).getElementAsRawLogical(0));
+    }
+
+    @Test
+    public void testAttachDoesNotLeakAcrossTasks() throws Exception {
+
+        RenjinResult rResult = Renjin.R()
+                                     .code("attach(list(leaked = 1), name = 'leaked'); TRUE")
+                                     .build()
+                                     .execute();
+        assertTrue(rResult.success());
+
+        // Search path is restored on the engine before it is reused.
+        for(int i = 0; i < 4; i++) {
+            rResult = Renjin.R().code("exists('leaked')").build().execute();
+            assertTrue(rResult.success());
+            assertEquals(0, ((LogicalVector) rResult.output()).getElementAsRawLogical(0));
+        }
+    }
+
+    @Test
+    public void testSearchPathChangesDoNotChurnPool() throws Exception {
+
+        String[] tasks = {
+            "attach(list(zz = 1), name = 'scratch'); TRUE",
+            "attach(list(zz = 2), pos = 3, name = 'deep'); TRUE",
+            "library(stats); attach(NULL, name = 'empty'); TRUE"
+        };
+
+        RenjinResult rResult = Renjin.R().code("TRUE").build().execute();
+        assertTrue(rResult.success());
+        long evicted = RenjinMetrics.METRICS.count(RenjinMetrics.EVICTED);
+        int engines = RenjinManager.POOL.engines();
+
+        for(String task : tasks) {
+            rResult = Renjin.R().code(task).build().execute();
+            assertTrue(rResult.success());
+            rResult = Renjin.R()
+                            .code("exists('zz') || 'scratch' %in% search() || " +
+                                  "'deep' %in% search() || 'empty' %in% search()")
+                            .build()
+                            .execute();
+            assertTrue(rResult.success());
+            assertEquals(0, ((LogicalVector) rResult.output()).getElementAsRawLogical(0));
+        }
+
+        assertEquals(evicted, RenjinMetrics.METRICS.count(RenjinMetrics.EVICTED));
+        assertTrue(RenjinManager.POOL.engines() >= engines);
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.renjin.sexp.*;
+
+/*
+ * RenjinInputRegistryTests
+ *
+ * Tests renjin-r-executor support for registered,
+ * content-addressed RenjinTask data inputs.
+ */
+public class RenjinInputRegistryTests {
+
+    @Test
+    public void testRegisterIsContentAddressed() throws Exception {
+
+        String handle = Renjin.register(new DoubleArrayVector(1, 2, 3));
+        assertEquals(handle, Renjin.register(new DoubleArrayVector(1, 2, 3)));
+        assertNotEquals(handle, Renjin.register(new DoubleArrayVector(3, 2, 1)));
+    }
+
+    @Test
+    public void testRegisteredInputOnSerializedTask() throws Exception {
+
+        String handle = Renjin.register(new DoubleArrayVector(2, 4, 6));
+
+        RenjinTask rTask = Renjin.R()
+                                 .code("sum(lookup) * n")
+                                 .inputRef("lookup", handle)
+                                 .input("n", 2)
+                                 .build();
+
+        RenjinResult rResult = RenjinSerializationTests.roundTrip(
+            RenjinSerializationTests.roundTrip(rTask).execute());
+
+        assertTrue(rResult.success());
+        assertEquals(24.0, ((DoubleVector) rResult.output())
+                                .getElementAsDouble(0), 0.0);
+        assertFalse(rResult.input().containsKey("lookup"));
+    }
+
+    @Test
+    public void testDeregisteredInputFails() throws Exception {
+
+        String handle = Renjin.register(new StringArrayVector("a", "b"));
+        RenjinTask rTask = Renjin.R()
+                                 .code("length(lookup)")
+                                 .inputRef("lookup", handle)
+                                 .build();
+
+        assertTrue(Renjin.deregister(handle));
+        RenjinResult rResult = rTask.execute();
+        assertFalse(rResult.success());
+        assertTrue(rResult.error().contains(handle));
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import io.onetapbeyond.renjin.r.executor.manager.RenjinMappingCache;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.renjin.sexp.*;
+
+/*
+ * RenjinMappedInputTests
+ *
+ * Tests renjin-r-executor support for memory mapped
+ * RenjinTask data inputs.
+ */
+public class RenjinMappedInputTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMappedDoubles() throws Exception {
+
+        Path file = doubles(1.0, 2.0, 3.0, 4.0);
+        RenjinResult rResult = Renjin.R()
+                                     .code("sum(x)")
+                                     .inputDoubles("x", file)
+                                     .build()
+                                     .execute();
+
+        assertTrue(rResult.success());
+        assertEquals(10.0, ((DoubleVector) rResult.output())
+                                .getElementAsDouble(0), 0.0);
+        assertFalse(rResult.input().containsKey("x"));
+    }
+
+    @Test
+    public void testMappedRegionAsMatrix() throws Exception {
+
+        Path file = doubles(9.0, 1.0, 2.0, 3.0, 4.0, 9.0);
+        RenjinResult rResult = Renjin.R()
+                                     .code("dim(x) <- c(2L, 2L); x[2, 2]")
+                                     .inputDoubles("x", file, 8, 4,
+                                                   ByteOrder.LITTLE_ENDIAN)
+                                     .build()
+                                     .execute();
+
+        assertTrue(rResult.success());
+        assertEquals(4.0, ((DoubleVector) rResult.output())
+                                .getElementAsDouble(0), 0.0);
+    }
+
+    @Test
+    public void testMappedIntsOnSerializedTask() throws Exception {
+
+        ByteBuffer data = ByteBuffer.allocate(12).order(ByteOrder.BIG_ENDIAN);
+        data.putInt(5).putInt(6).putInt(7);
+        Path file = folder.newFile().toPath();
+        Files.write(file, data.array());
+
+        RenjinTask rTask = Renjin.R()
+                                 .code("max(x)")
+                                 .inputInts("x", file, 0, -1, ByteOrder.BIG_ENDIAN)
+                                 .build();
+
+        RenjinResult rResult =
+            RenjinSerializationTests.roundTrip(rTask).execute();
+
+        assertTrue(rResult.success());
+        assertEquals(7, ((IntVector) rResult.output()).getElementAsInt(0));
+    }
+
+    @Test
+    public void testMappingShared() throws Exception {
+
+        Path file = doubles(1.0, 2.0);
+        long misses = RenjinMappingCache.MAPPINGS.misses();
+        for(int i = 0; i < 3; i++) {
+            assertTrue(Renjin.R().code("x").inputDoubles("x", file)
+                                 .build().execute().success());
+        }
+        assertEquals(misses + 1, RenjinMappingCache.MAPPINGS.misses());
+    }
+
+    @Test
+    public void testMappingCacheBounded() throws Exception {
+
+        Path file = doubles(new double[128]);
+        long evictions = RenjinMappingCache.MAPPINGS.evictions();
+        for(int i = 0; i < 100; i++) {
+            RenjinMappingCache.MAPPINGS.map(file.toString(), i * 8, 8);
+        }
+        assertTrue(RenjinMappingCache.MAPPINGS.size() <= 64);
+        assertTrue(RenjinMappingCache.MAPPINGS.evictions() >= evictions + 36);
+    }
+
+    @Test(expected=RenjinException.class)
+    public void testMappedRegionLimit() throws Exception {
+        Renjin.R().code("x").inputDoubles("x", doubles(1.0), 0,
+                            Integer.MAX_VALUE, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Test
+    public void testMissingFileFails() throws Exception {
+
+        RenjinResult rResult = Renjin.R()
+                                     .code("x")
+                                     .inputDoubles("x", new File("missing.bin").toPath())
+                                     .build()
+                                     .execute();
+        assertFalse(rResult.success());
+    }
+
+    private Path doubles(double... values) throws Exception {
+        ByteBuffer data = ByteBuffer.allocate(values.length * 8)
+                                    .order(ByteOrder.LITTLE_ENDIAN);
+        for(double value : values)
+            data.putDouble(value);
+        Path file = folder.newFile().toPath();
+        Files.write(file, data.array());
+        return file;
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import io.onetapbeyond.renjin.r.executor.manager.RenjinMetrics;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import javax.management.*;
+
+/*
+ * RenjinMetricsTests
+ *
+ * Tests renjin-r-executor pool and task metrics, published
+ * on JMX and on a pluggable metrics registry adapter.
+ */
+public class RenjinMetricsTests {
+
+    private static final RenjinMetrics METRICS = RenjinMetrics.METRICS;
+
+    @After
+    public void removeAdapter() {
+        Renjin.metrics(null);
+    }
+
+    @Test
+    public void testTaskOutcomesCounted() throws Exception {
+
+        long succeeded = METRICS.getTasksSucceeded();
+        long failed = METRICS.getTasksFailed();
+        long evals = METRICS.latencyCount(RenjinMetrics.EVAL);
+
+        assertTrue(Renjin.R().code("1 + 1").build().execute().success());
+        assertFalse(Renjin.R().code("stop('boom')").build().execute().success());
+
+        assertEquals(succeeded + 1, METRICS.getTasksSucceeded());
+        assertEquals(failed + 1, METRICS.getTasksFailed());
+        assertEquals(evals + 2, METRICS.latencyCount(RenjinMetrics.EVAL));
+        assertTrue(METRICS.latencyCount(RenjinMetrics.ACQUIRE) > 0);
+        assertTrue(METRICS.latencyCount(RenjinMetrics.TASK) > 0);
+        assertTrue(METRICS.getLatencyP50().containsKey(RenjinMetrics.TASK));
+        assertTrue(METRICS.getLatencyP99().get(RenjinMetrics.TASK) >=
+                   METRICS.getLatencyP50().get(RenjinMetrics.TASK));
+    }
+
+    @Test
+    public void testPublishedOnJmx() throws Exception {
+
+        assertTrue(Renjin.R().code("TRUE").build().execute().success());
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(RenjinMetrics.OBJECT_NAME);
+        assertTrue(server.isRegistered(name));
+        assertTrue((Integer) server.getAttribute(name, "MaxPoolSize") >= 1);
+        assertTrue((Long) server.getAttribute(name, "TasksSucceeded") >= 1);
+        assertNotNull(server.getAttribute(name, "LatencyP99"));
+    }
+
+    @Test
+    public void testRegistryAdapter() throws Exception {
+
+        Map<String,AtomicLong> timers = new ConcurrentHashMap<String,AtomicLong>();
+        Map<String,AtomicLong> counters = new ConcurrentHashMap<String,AtomicLong>();
+        Map<String,LongSupplier> gauges = new ConcurrentHashMap<String,LongSupplier>();
+
+        Renjin.metrics(new RenjinMetricsRegistry() {
+            public void record(String name, long nanos) {
+                timers.computeIfAbsent(name, n -> new AtomicLong()).incrementAndGet();
+            }
+            public void increment(String name) {
+                counters.computeIfAbsent(name, n -> new AtomicLong()).incrementAndGet();
+            }
+            public void gauge(String name, LongSupplier value) {
+                gauges.put(name, value);
+            }
+        });
+
+        assertTrue(Renjin.R().code("sum(1:10)").build().execute().success());
+
+        assertEquals(1, timers.get(RenjinMetrics.TASK).get());
+        assertEquals(1, timers.get(RenjinMetrics.EVAL).get());
+        assertEquals(1, counters.get(RenjinMetrics.SUCCEEDED).get());
+        assertTrue(gauges.get("pool.max").getAsLong() >= 1);
+        assertTrue(gauges.get("pool.size").getAsLong() >= 1);
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * RenjinPoolFailureTests
+ *
+ * Tests renjin-r-executor reporting of pool warm-up failures.
+ * Runs in a dedicated test JVM configured with an R prelude
+ * file that does not exist, see build.gradle.
+ */
+public class RenjinPoolFailureTests {
+
+    @Test
+    public void testWarmupFailureReported() throws Exception {
+
+        // Warm-up completes, but not successfully.
+        assertFalse(Renjin.awaitPoolReady(120, TimeUnit.SECONDS));
+        assertFalse(Renjin.poolReady());
+        assertNotNull(Renjin.poolFailure());
+        assertTrue(Renjin.poolFailure().getMessage().contains(
+                        "missing-renjin-r-executor-prelude.R"));
+    }
+
+    @Test
+    public void testNoEngineWithoutPrelude() throws Exception {
+
+        RenjinResult rResult = Renjin.R().code("1 + 1").build().execute();
+        assertFalse(rResult.success());
+        assertTrue(rResult.cause() instanceof RenjinException);
+        assertTrue(rResult.error().contains("prelude"));
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import io.onetapbeyond.renjin.r.executor.manager.RenjinManager;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.concurrent.TimeUnit;
+import javax.script.*;
+
+/*
+ * RenjinPoolTests
+ *
+ * Tests renjin-r-executor support for the bounded pool
+ * of Renjin ScriptEngines, including pool warm-up.
+ */
+public class RenjinPoolTests {
+
+    @Test
+    public void testPoolWarmup() throws InterruptedException {
+        assertTrue(Renjin.awaitPoolReady(120, TimeUnit.SECONDS));
+        assertTrue(Renjin.poolReady());
+        assertTrue(RenjinManager.POOL.engines() >= 1);
+    }
+
+    @Test
+    public void testReleasedEngineReused() throws RenjinException {
+
+        ScriptEngine engine =
+            RenjinManager.POOL.getEngine(120, TimeUnit.SECONDS);
+        assertNotNull(engine);
+        int engines = RenjinManager.POOL.engines();
+        RenjinManager.POOL.releaseEngine(engine);
+
+        // Released engine is returned to the pool, not dropped.
+        assertEquals(engines, RenjinManager.POOL.engines());
+        assertTrue(RenjinManager.POOL.idleEngines() >= 1);
+    }
+
+    @Test
+    public void testRecyclingDisabledByDefault() throws RenjinException {
+
+        ScriptEngine engine =
+            RenjinManager.POOL.getEngine(120, TimeUnit.SECONDS);
+        assertNotNull(engine);
+        long recycled = RenjinManager.POOL.recycledEngines();
+        RenjinManager.POOL.recordAllocation(engine, Long.MAX_VALUE / 2);
+        RenjinManager.POOL.releaseEngine(engine);
+
+        // No recycling limits set, engine is kept regardless of usage.
+        assertEquals(recycled, RenjinManager.POOL.recycledEngines());
+        ScriptEngine reused =
+            RenjinManager.POOL.getEngine(120, TimeUnit.SECONDS);
+        RenjinManager.POOL.releaseEngine(reused);
+        assertTrue(RenjinManager.POOL.idleEngines() >= 1);
+    }
+
+    @Test
+    public void testThreadAllocatedBytes() {
+        long before = RenjinManager.threadAllocatedBytes();
+        byte[][] garbage = new byte[64][1024];
+        long after = RenjinManager.threadAllocatedBytes();
+        assertNotNull(garbage);
+        if(before >= 0)
+            assertTrue(after >= before);
+    }
+
+}
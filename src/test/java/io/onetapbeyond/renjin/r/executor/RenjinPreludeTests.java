@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.renjin.sexp.*;
+
+/*
+ * RenjinPreludeTests
+ *
+ * Tests renjin-r-executor support for an R prelude run on each
+ * new engine. Runs in a dedicated test JVM configured with a
+ * single engine and the R prelude in src/test/resources, so
+ * every task runs on the same engine, see build.gradle.
+ */
+public class RenjinPreludeTests {
+
+    @Test
+    public void testPreludeVisibleToTaskCode() throws RenjinException {
+
+        RenjinResult rResult = Renjin.R().code("scaled(x) + .offset")
+                                         .input("x", 3)
+                                         .build()
+                                         .execute();
+        assertTrue(rResult.success());
+        assertEquals(16.0, value(rResult), 0.0);
+    }
+
+    @Test
+    public void testPreludeSurvivesCleanup() throws RenjinException {
+
+        for(int i = 0; i < 3; i++) {
+            RenjinResult rResult = Renjin.R().code("rm(list = ls()); " +
+                                                   "y <- scaled(1); y")
+                                             .build()
+                                             .execute();
+            assertTrue(rResult.success());
+            assertEquals(2.0, value(rResult), 0.0);
+        }
+    }
+
+    @Test
+    public void testMaskedPreludeRestored() throws RenjinException {
+
+        RenjinResult rResult = Renjin.R().code("multiplier <- 100; scaled(1)")
+                                         .build()
+                                         .execute();
+        assertTrue(rResult.success());
+
+        rResult = Renjin.R().code("c(multiplier, .offset)").build().execute();
+        assertTrue(rResult.success());
+        assertEquals(2.0, ((Vector) rResult.output()).getElementAsDouble(0), 0.0);
+        assertEquals(10.0, ((Vector) rResult.output()).getElementAsDouble(1), 0.0);
+    }
+
+    private static double value(RenjinResult rResult) {
+        return ((Vector) rResult.output()).getElementAsDouble(0);
+    }
+
+}
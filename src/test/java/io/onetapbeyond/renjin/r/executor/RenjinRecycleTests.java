@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import io.onetapbeyond.renjin.r.executor.manager.RenjinManager;
+import io.onetapbeyond.renjin.r.executor.manager.RenjinMetrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import javax.script.ScriptEngine;
+
+/*
+ * RenjinRecycleTests
+ *
+ * Tests renjin-r-executor recycling of pooled engines. Runs in a
+ * dedicated test JVM with a pool of two engines, each retired once
+ * released, and an R prelude that slows or fails engine creation
+ * while flag files exist, see build.gradle.
+ */
+public class RenjinRecycleTests {
+
+    private static final RenjinManager POOL = RenjinManager.POOL;
+
+    private static final File SLOW =
+        new File("build", "renjin-r-executor-recycle-slow");
+    private static final File FAIL =
+        new File("build", "renjin-r-executor-recycle-fail");
+
+    @Before
+    public void setUp() throws Exception {
+        SLOW.getParentFile().mkdirs();
+        assertTrue(Renjin.awaitPoolReady(120, TimeUnit.SECONDS));
+        await(() -> POOL.engines() == 2 && POOL.idleEngines() == 2);
+    }
+
+    @After
+    public void tearDown() {
+        SLOW.delete();
+        FAIL.delete();
+    }
+
+    @Test
+    public void testIdleEngineRetired() throws Exception {
+
+        long recycled = POOL.recycledEngines();
+        ScriptEngine a = POOL.getEngine();
+        ScriptEngine b = POOL.getEngine();
+
+        // Retired while idle, dropped as soon as the replacement joins.
+        POOL.releaseEngine(a);
+        await(() -> POOL.recycledEngines() == recycled + 1);
+        assertEquals(2, POOL.engines());
+
+        ScriptEngine c = POOL.getEngine();
+        assertNotSame(a, c);
+        releaseAll(b, c);
+    }
+
+    @Test
+    public void testInUseEngineRetiredOnRelease() throws Exception {
+
+        long recycled = POOL.recycledEngines();
+        ScriptEngine a = POOL.getEngine();
+        ScriptEngine b = POOL.getEngine();
+
+        // Engine taken again while its replacement is being created.
+        SLOW.createNewFile();
+        POOL.releaseEngine(a);
+        assertSame(a, POOL.getEngine());
+        await(() -> POOL.recycledEngines() == recycled + 1);
+        SLOW.delete();
+
+        // Pool overshoots by the replacement, engines in use do not.
+        assertEquals(POOL.maxEngines() + 1, POOL.engines());
+        assertEquals(1, POOL.idleEngines());
+        try {
+            POOL.getEngine(100, TimeUnit.MILLISECONDS);
+            fail("Engines in use must never exceed the pool limit.");
+        } catch(RenjinException rex) {}
+
+        // Retired engine evicted on release.
+        long evicted = RenjinMetrics.METRICS.count(RenjinMetrics.EVICTED);
+        POOL.releaseEngine(a);
+        assertEquals(2, POOL.engines());
+        assertEquals(evicted + 1,
+                     RenjinMetrics.METRICS.count(RenjinMetrics.EVICTED));
+
+        ScriptEngine c = POOL.getEngine();
+        assertNotSame(a, c);
+        releaseAll(b, c);
+    }
+
+    @Test
+    public void testFailedReplacementRetried() throws Exception {
+
+        long recycled = POOL.recycledEngines();
+        ScriptEngine a = POOL.getEngine();
+        ScriptEngine b = POOL.getEngine();
+
+        // Replacement fails, engine kept and capacity restored.
+        long failed = RenjinMetrics.METRICS.count(RenjinMetrics.CREATE_FAILED);
+        FAIL.createNewFile();
+        POOL.releaseEngine(a);
+        await(() -> RenjinMetrics.METRICS.count(
+                        RenjinMetrics.CREATE_FAILED) > failed);
+        assertEquals(recycled, POOL.recycledEngines());
+        assertEquals(2, POOL.engines());
+        assertSame(a, POOL.getEngine());
+
+        // Replacement retried on the next release.
+        FAIL.delete();
+        POOL.releaseEngine(a);
+        await(() -> POOL.recycledEngines() == recycled + 1);
+        assertEquals(2, POOL.engines());
+
+        ScriptEngine c = POOL.getEngine();
+        assertNotSame(a, c);
+        releaseAll(b, c);
+    }
+
+    /*
+     * Release engines, each retired and replaced on release.
+     */
+    private static void releaseAll(ScriptEngine... engines) throws Exception {
+        long recycled = POOL.recycledEngines();
+        for(ScriptEngine engine : engines)
+            POOL.releaseEngine(engine);
+        await(() -> POOL.recycledEngines() == recycled + engines.length);
+    }
+
+    private static void await(BooleanSupplier condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 60000;
+        while(!condition.getAsBoolean() &&
+                        System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.*;
+import java.util.*;
+import org.renjin.sexp.*;
+import io.onetapbeyond.renjin.r.executor.results.RenjinResultImpl;
+
+/*
+ * RenjinResultTests
+ *
+ * Tests renjin-r-executor RenjinResult data access
+ * and RenjinResult serialization.
+ */
+public class RenjinResultTests {
+
+    @Test
+    public void testOutputDeserializedOnce() throws RenjinException {
+        SEXP data = new DoubleArrayVector(1,2,3,4,5);
+        RenjinResult rResult = Renjin.R().code("x * 2")
+                                         .input("x", data)
+                                         .build()
+                                         .execute();
+        assertTrue(rResult.success());
+        assertSame(rResult.output(), rResult.output());
+        assertEquals(data, rResult.input().get("x"));
+        assertSame(rResult.input().get("x"), rResult.input().get("x"));
+    }
+
+    @Test
+    public void testReleasedResultReserialized() throws Exception {
+        SEXP data = new DoubleArrayVector(1,2,3,4,5);
+        RenjinResult rResult = Renjin.R().code("x * 2")
+                                         .input("x", data)
+                                         .releaseSerializedResult(true)
+                                         .build()
+                                         .execute();
+        SEXP output = rResult.output();
+        SEXP input = (SEXP) rResult.input().get("x");
+        assertNotNull(output);
+
+        RenjinResult copy = roundTrip(rResult);
+        assertTrue(copy.success());
+        assertEquals(output, copy.output());
+        assertEquals(input, copy.input().get("x"));
+    }
+
+    @Test
+    public void testInputEchoDisabled() throws Exception {
+        SEXP data = new DoubleArrayVector(1,2,3,4,5);
+        RenjinResult rResult = Renjin.R().code("sum(x) + n")
+                                         .input("x", data)
+                                         .input("n", 1)
+                                         .echoInputs(false)
+                                         .build()
+                                         .execute();
+        assertTrue(rResult.success());
+        assertTrue(rResult.input().isEmpty());
+        assertTrue(roundTrip(rResult).input().isEmpty());
+        assertEquals(16,
+            ((org.renjin.sexp.Vector) rResult.output()).getElementAsDouble(0), 0.0);
+    }
+
+    @Test
+    public void testCorruptPayloadNotReleased() throws Exception {
+        byte[] corrupt = { 'X', '\n', 0, 0, 0, 3, 1, 2 };
+        Map<String,Object> inputs = new HashMap<String,Object>();
+        inputs.put("x", corrupt);
+        RenjinResult rResult = new RenjinResultImpl(
+            RenjinResultImpl.SUCCESS | RenjinResultImpl.OUTPUT_SERIALIZED |
+            RenjinResultImpl.INPUT_SERIALIZED | RenjinResultImpl.RELEASE_SERIALIZED,
+            corrupt, 0, null, null, inputs, null, null, 0, null);
+
+        assertNull(rResult.output());
+        assertNull(rResult.input().get("x"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(rResult.output(out));
+        assertArrayEquals(corrupt, out.toByteArray());
+
+        RenjinResult copy = roundTrip(rResult);
+        assertTrue(copy.input().containsKey("x"));
+        ByteArrayOutputStream copied = new ByteArrayOutputStream();
+        assertTrue(copy.output(copied));
+        assertArrayEquals(corrupt, copied.toByteArray());
+    }
+
+    static RenjinResult roundTrip(RenjinResult rResult) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(rResult);
+        oos.close();
+        ObjectInputStream ois = new ObjectInputStream(
+            new ByteArrayInputStream(baos.toByteArray()));
+        return (RenjinResult) ois.readObject();
+    }
+
+}
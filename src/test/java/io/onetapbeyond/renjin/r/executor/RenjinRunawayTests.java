@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import io.onetapbeyond.renjin.r.executor.manager.RenjinManager;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * RenjinRunawayTests
+ *
+ * Tests renjin-r-executor keeps engines abandoned while still
+ * evaluating timed out R code counted against the pool limit.
+ * Runs in a dedicated test JVM with the engine pool limited to
+ * two engines and a short acquire timeout, see build.gradle.
+ */
+public class RenjinRunawayTests {
+
+    /*
+     * R code busy for three seconds, regardless of interrupts.
+     */
+    private static final String RUNAWAY =
+        "s <- as.numeric(Sys.time()); " +
+        "while(as.numeric(Sys.time()) - s < 3) NULL";
+
+    @Test
+    public void testRunawayEnginesBounded() throws Exception {
+
+        int maxEngines = RenjinManager.POOL.maxEngines();
+        assertEquals(2, maxEngines);
+
+        for(int i = 0; i < maxEngines + 2; i++) {
+            RenjinResult rResult = Renjin.R().code(RUNAWAY)
+                                        .timeout(100, TimeUnit.MILLISECONDS)
+                                        .build()
+                                        .execute();
+            assertFalse(rResult.success());
+            assertTrue(runawayEvaluators() <= maxEngines);
+            assertTrue(RenjinManager.POOL.engines() <= maxEngines);
+        }
+
+        // Pool capacity recovered once runaway code ends.
+        long deadline = System.currentTimeMillis() + 30000;
+        while(runawayEvaluators() > 0 &&
+                        System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, runawayEvaluators());
+        RenjinResult rResult = Renjin.R().code("x <- 1").build().execute();
+        assertTrue(rResult.success());
+    }
+
+    /*
+     * Evaluator threads still running R code.
+     */
+    private static int runawayEvaluators() {
+        int running = 0;
+        for(Thread thread : Thread.getAllStackTraces().keySet()) {
+            if(thread.getName().startsWith("renjin-r-executor-eval-") &&
+                        thread.getState() == Thread.State.RUNNABLE)
+                running++;
+        }
+        return running;
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import io.onetapbeyond.renjin.r.executor.manager.RenjinScriptCache;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.renjin.sexp.*;
+
+/*
+ * RenjinScriptCacheTests
+ *
+ * Tests renjin-r-executor support for caching parsed R code
+ * across pooled task executions.
+ */
+public class RenjinScriptCacheTests {
+
+    @Test
+    public void testIdenticalCodeParsedOnce() throws RenjinException {
+
+        String code = "y <- x * 2; y + 1";
+        long misses = RenjinScriptCache.CACHE.misses();
+        long hits = RenjinScriptCache.CACHE.hits();
+
+        for(int i = 0; i < 3; i++) {
+            RenjinResult rResult = Renjin.R().code(code)
+                                             .input("x", i)
+                                             .build()
+                                             .execute();
+            assertTrue(rResult.success());
+            assertEquals(i * 2 + 1,
+                ((Vector) rResult.output()).getElementAsDouble(0), 0.0);
+        }
+
+        // First execution parses, subsequent executions hit the cache.
+        assertEquals(misses + 1, RenjinScriptCache.CACHE.misses());
+        assertTrue(RenjinScriptCache.CACHE.hits() >= hits + 2);
+    }
+
+    @Test
+    public void testParseFailureReportedOnResult() throws RenjinException {
+        RenjinResult rResult = Renjin.R().code("x <- (1 + ").build().execute();
+        assertFalse(rResult.success());
+        assertNotNull(rResult.error());
+        assertNotNull(rResult.cause());
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import java.io.*;
+import java.util.*;
+import org.renjin.sexp.*;
+
+/*
+ * RenjinSerializationTests
+ *
+ * Tests renjin-r-executor RenjinTask and RenjinResult
+ * serialization, simulating distribution across JVMs.
+ */
+@RunWith(Parameterized.class)
+public class RenjinSerializationTests {
+
+    private boolean serializedTasks;
+    private boolean serializedResults;
+
+    public RenjinSerializationTests(boolean serializedTasks,
+                                    boolean serializedResults) {
+        this.serializedTasks = serializedTasks;
+        this.serializedResults = serializedResults;
+    }
+
+    /*
+     * JUnit Parameterized Tests
+     */
+    @Parameters
+    public static Collection<Object[]> getTestParameters() {
+        return Arrays.asList(new Object[][] {
+                { false, false }, { true, false },
+                { false, true }, { true, true }
+        });
+    }
+
+    @Test
+    public void testTaskAndResultRoundTrip() throws Exception {
+
+        SEXP data = new DoubleArrayVector(1,2,3,4,5);
+        RenjinTask rTask = Renjin.R(serializedTasks, serializedResults)
+                                 .code("x * n")
+                                 .input("x", data)
+                                 .input("n", 2)
+                                 .build();
+
+        RenjinResult rResult = roundTrip(roundTrip(rTask).execute());
+
+        assertTrue(rResult.success());
+        assertFalse(rResult.timedOut());
+        assertEquals(5, rResult.output().length());
+        assertEquals(data, rResult.input().get("x"));
+        assertEquals(2, rResult.input().get("n"));
+    }
+
+    @Test
+    public void testFailedResultRoundTrip() throws Exception {
+
+        RenjinTask rTask = Renjin.R(serializedTasks, serializedResults)
+                                 .code("x <- n")
+                                 .input("m", 12)
+                                 .build();
+
+        RenjinResult rResult = roundTrip(roundTrip(rTask).execute());
+
+        assertFalse(rResult.success());
+        assertNotNull(rResult.error());
+        assertNull(rResult.output());
+        assertEquals(12, rResult.input().get("m"));
+    }
+
+    @Test
+    public void testLocalExecutionKeepsLiveInputs() throws Exception {
+
+        SEXP data = new DoubleArrayVector(1,2,3);
+        RenjinTask rTask = Renjin.R(serializedTasks, serializedResults)
+                                 .code("sum(x)")
+                                 .input("x", data)
+                                 .build();
+
+        // Inputs are serialized only when the task leaves the JVM.
+        RenjinResult rResult = rTask.execute();
+        assertTrue(rResult.success());
+        assertSame(data, rResult.input().get("x"));
+
+        rResult = roundTrip(rTask).execute();
+        assertTrue(rResult.success());
+        assertEquals(data, rResult.input().get("x"));
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T roundTrip(T value) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(value);
+        oos.close();
+        ObjectInputStream ois = new ObjectInputStream(
+            new ByteArrayInputStream(baos.toByteArray()));
+        return (T) ois.readObject();
+    }
+
+}
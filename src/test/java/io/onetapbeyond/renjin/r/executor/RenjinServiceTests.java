@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.renjin.sexp.*;
+
+/*
+ * RenjinServiceTests
+ *
+ * Tests renjin-r-executor support for asynchronous
+ * R task execution.
+ */
+public class RenjinServiceTests {
+
+    @Test
+    public void testExecuteAsync() throws Exception {
+        RenjinTask rTask = Renjin.R().code("x<-n").input("n", 12).build();
+        RenjinResult rResult = rTask.executeAsync().get(120, TimeUnit.SECONDS);
+        assertTrue(rResult.success());
+        assertNotNull(rResult.output());
+        assertTrue(rResult.output().isNumeric());
+    }
+
+    @Test
+    public void testServiceSubmit() throws Exception {
+
+        RenjinService rService = RenjinService.create(4);
+        List<CompletableFuture<RenjinResult>> rFutures =
+                                new ArrayList<CompletableFuture<RenjinResult>>();
+        try {
+            for(int i = 0; i < 16; i++) {
+                rFutures.add(rService.submit(Renjin.R()
+                                                   .code("n * 2")
+                                                   .input("n", i)
+                                                   .build()));
+            }
+            for(int i = 0; i < 16; i++) {
+                RenjinResult rResult =
+                    rFutures.get(i).get(120, TimeUnit.SECONDS);
+                assertTrue(rResult.success());
+                assertEquals(i * 2,
+                    ((org.renjin.sexp.Vector) rResult.output()).getElementAsDouble(0), 0.0);
+            }
+        } finally {
+            rService.shutdown();
+        }
+    }
+
+}
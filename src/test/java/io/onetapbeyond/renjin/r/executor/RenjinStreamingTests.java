@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.*;
+import java.nio.channels.Channels;
+import org.renjin.sexp.*;
+
+/*
+ * RenjinStreamingTests
+ *
+ * Tests renjin-r-executor support for streamed
+ * RenjinTask data inputs and outputs.
+ */
+public class RenjinStreamingTests {
+
+    @Test
+    public void testOutputSinkToStreamedInput() throws Exception {
+
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        RenjinResult rResult = Renjin.R()
+                                     .code("seq(1, 100000) * 0.5")
+                                     .output(sink)
+                                     .build()
+                                     .execute();
+
+        assertTrue(rResult.success());
+        assertNull(rResult.output());
+        assertTrue(sink.size() > 0);
+
+        rResult = Renjin.R()
+                        .code("sum(x)")
+                        .input("x", new ByteArrayInputStream(sink.toByteArray()))
+                        .build()
+                        .execute();
+
+        assertTrue(rResult.success());
+        assertEquals(2500025000.0, ((DoubleVector) rResult.output())
+                                .getElementAsDouble(0), 0.0);
+        assertFalse(rResult.input().containsKey("x"));
+    }
+
+    @Test
+    public void testResultOutputToChannelInput() throws Exception {
+
+        RenjinResult rResult = Renjin.R()
+                                     .code("c(a = 1L, b = 2L, c = 3L)")
+                                     .build()
+                                     .execute();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        assertTrue(rResult.output(baos));
+
+        rResult = Renjin.R()
+                        .code("x[['b']] + 1L")
+                        .input("x", Channels.newChannel(
+                            new ByteArrayInputStream(baos.toByteArray())))
+                        .build()
+                        .execute();
+
+        assertTrue(rResult.success());
+        assertEquals(3, ((IntVector) rResult.output()).getElementAsInt(0));
+    }
+
+    @Test
+    public void testStreamedInputOnSerializedTask() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Renjin.R().code("c(2, 4, 6)").build().execute().output(baos);
+
+        RenjinTask rTask = Renjin.R()
+                                 .code("mean(x)")
+                                 .input("x", new ByteArrayInputStream(baos.toByteArray()))
+                                 .build();
+
+        RenjinResult rResult =
+            RenjinSerializationTests.roundTrip(rTask).execute();
+
+        assertTrue(rResult.success());
+        assertEquals(4.0, ((DoubleVector) rResult.output())
+                                .getElementAsDouble(0), 0.0);
+    }
+
+    @Test
+    public void testStreamedInputTaskSingleUse() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Renjin.R().code("c(2, 4, 6)").build().execute().output(baos);
+
+        RenjinTask rTask = Renjin.R()
+                                 .code("mean(x)")
+                                 .input("x", new ByteArrayInputStream(baos.toByteArray()))
+                                 .build();
+
+        assertTrue(rTask.execute().success());
+
+        RenjinResult rResult = rTask.execute();
+        assertFalse(rResult.success());
+        assertNotNull(rResult.error());
+
+        try {
+            RenjinSerializationTests.roundTrip(rTask);
+            fail("Serialization of consumed streamed inputs must fail.");
+        } catch(NotSerializableException nsex) {}
+    }
+
+    @Test
+    public void testStreamedInputSerializedOnce() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Renjin.R().code("c(2, 4, 6)").build().execute().output(baos);
+
+        RenjinTask rTask = Renjin.R()
+                                 .code("mean(x)")
+                                 .input("x", new ByteArrayInputStream(baos.toByteArray()))
+                                 .build();
+
+        RenjinSerializationTests.roundTrip(rTask);
+        assertFalse(rTask.execute().success());
+    }
+
+    @Test(expected=RenjinException.class)
+    public void testOutputSinkOnBatch() throws RenjinException {
+        Renjin.R().code("x").output(new ByteArrayOutputStream())
+                  .buildBatch(java.util.Collections.emptyList());
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.concurrent.*;
+
+/*
+ * RenjinTimeoutTests
+ *
+ * Tests renjin-r-executor support for R task execution
+ * timeouts and cancellation.
+ */
+public class RenjinTimeoutTests {
+
+    @Test
+    public void testTaskTimeout() throws RenjinException {
+
+        RenjinTask rTask = Renjin.R().code("Sys.sleep(30)")
+                                     .timeout(250, TimeUnit.MILLISECONDS)
+                                     .build();
+        long start = System.currentTimeMillis();
+        RenjinResult rResult = rTask.execute();
+
+        assertFalse(rResult.success());
+        assertTrue(rResult.timedOut());
+        assertTrue(rResult.cause() instanceof TimeoutException);
+        assertNotNull(rResult.error());
+        assertTrue(System.currentTimeMillis() - start < 30000);
+
+        // Pool capacity recovered following eviction of timed out engine.
+        RenjinResult nextResult = Renjin.R().code("x <- 1").build().execute();
+        assertTrue(nextResult.success());
+        assertFalse(nextResult.timedOut());
+    }
+
+    @Test
+    public void testTaskCompletesWithinTimeout() throws RenjinException {
+        RenjinResult rResult = Renjin.R().code("x <- n")
+                                         .input("n", 1)
+                                         .timeout(60, TimeUnit.SECONDS)
+                                         .build()
+                                         .execute();
+        assertTrue(rResult.success());
+        assertFalse(rResult.timedOut());
+    }
+
+    @Test
+    public void testTaskCancel() throws Exception {
+
+        RenjinTask rTask = Renjin.R().code("Sys.sleep(30)").build();
+        CompletableFuture<RenjinResult> rFuture = rTask.executeAsync();
+
+        // Wait for the task to start executing R code, then cancel.
+        long deadline = System.currentTimeMillis() + 60000;
+        while(!rTask.cancel() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        RenjinResult rResult = rFuture.get(60, TimeUnit.SECONDS);
+        assertFalse(rResult.success());
+        assertFalse(rResult.timedOut());
+        assertTrue(rResult.cause() instanceof CancellationException);
+    }
+
+    @Test(expected=RenjinException.class)
+    public void testInvalidTimeout() throws RenjinException {
+        Renjin.R().code("x <- 1").timeout(0, TimeUnit.SECONDS);
+    }
+
+}
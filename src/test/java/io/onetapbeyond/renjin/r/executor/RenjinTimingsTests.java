@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.*;
+import org.renjin.sexp.*;
+
+/*
+ * RenjinTimingsTests
+ *
+ * Tests renjin-r-executor phase timing breakdown
+ * on RenjinResult.
+ */
+public class RenjinTimingsTests {
+
+    @Test
+    public void testPhaseTimingsRecorded() throws Exception {
+
+        RenjinTask rTask = Renjin.R()
+                                 .code("sum(x)")
+                                 .input("x", new DoubleArrayVector(1, 2, 3))
+                                 .build();
+        // Serialized task delivers inputs in serialized form.
+        RenjinResult rResult =
+            RenjinSerializationTests.roundTrip(rTask).execute();
+        assertTrue(rResult.success());
+
+        RenjinTimings timings = rResult.timings();
+        assertNotNull(timings);
+        assertTrue(timings.acquireWait() >= 0);
+        assertTrue(timings.engineCreate() >= 0);
+        assertTrue(timings.inputDecode() > 0);
+        assertTrue(timings.bind() > 0);
+        assertTrue(timings.parse() >= 0);
+        assertTrue(timings.eval() > 0);
+        assertTrue(timings.outputEncode() > 0);
+        assertTrue(timings.cleanup() > 0);
+    }
+
+    @Test
+    public void testTimingsSerializedWithResult() throws Exception {
+
+        RenjinResult rResult = Renjin.R().code("1:10").build().execute();
+        assertTrue(rResult.success());
+
+        RenjinTimings timings = rResult.timings();
+        RenjinTimings received =
+            RenjinSerializationTests.roundTrip(rResult).timings();
+        assertEquals(timings.eval(), received.eval());
+        assertEquals(timings.cleanup(), received.cleanup());
+        assertEquals(timings.outputEncode(), received.outputEncode());
+    }
+
+    @Test
+    public void testFailedTaskTimings() throws Exception {
+
+        RenjinResult rResult = Renjin.R().code("stop('boom')").build().execute();
+        assertFalse(rResult.success());
+        assertTrue(rResult.timings().eval() > 0);
+        assertEquals(0, rResult.timings().outputEncode());
+    }
+
+    @Test
+    public void testTimedOutTaskTimingsFixed() throws Exception {
+
+        // R code busy past the timeout, regardless of interrupts.
+        RenjinResult rResult = Renjin.R()
+            .code("s <- as.numeric(Sys.time()); " +
+                  "while(as.numeric(Sys.time()) - s < 1) NULL")
+            .timeout(100, java.util.concurrent.TimeUnit.MILLISECONDS)
+            .build()
+            .execute();
+        assertTrue(rResult.timedOut());
+
+        // Abandoned evaluation ends later, without touching the result.
+        String timings = rResult.timings().toString();
+        Thread.sleep(2000);
+        assertEquals(timings, rResult.timings().toString());
+    }
+
+    @Test
+    public void testBatchTimings() throws Exception {
+
+        List<Map<String,Object>> inputSets = new ArrayList<Map<String,Object>>();
+        for(int i = 0; i < 3; i++) {
+            inputSets.add(Collections.<String,Object>singletonMap("x", i));
+        }
+
+        RenjinBatch rBatch = Renjin.R().code("x * 2").buildBatch(inputSets);
+        for(RenjinResult rResult : rBatch.execute()) {
+            assertTrue(rResult.success());
+            assertTrue(rResult.timings().eval() > 0);
+        }
+    }
+
+}
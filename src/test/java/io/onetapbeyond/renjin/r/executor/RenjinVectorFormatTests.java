@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import io.onetapbeyond.renjin.r.executor.tasks.RenjinTaskImpl;
+import io.onetapbeyond.renjin.r.executor.tasks.RenjinVectorFormat;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.renjin.sexp.*;
+
+/*
+ * RenjinVectorFormatTests
+ *
+ * Tests renjin-r-executor binary fast path serialization
+ * of atomic vectors.
+ */
+public class RenjinVectorFormatTests {
+
+    @Test
+    public void testDoubleVectorRoundTrip() {
+
+        AttributeMap names = AttributeMap.builder()
+            .set(Symbol.get("names"), new StringArrayVector("a", "b", "c"))
+            .build();
+        SEXP data = new DoubleArrayVector(new double[] { 1.5, 2.5, 3.5 }, names);
+
+        byte[] serialized = RenjinTaskImpl.serializeSEXP(data);
+        assertTrue(RenjinVectorFormat.matches(serialized));
+
+        SEXP restored = RenjinTaskImpl.deserializeSEXP(serialized);
+        assertEquals(DoubleArrayVector.class, restored.getClass());
+        assertEquals(data, restored);
+        assertEquals(data.getAttribute(Symbol.get("names")),
+                     restored.getAttribute(Symbol.get("names")));
+    }
+
+    @Test
+    public void testDimAndClassAttributesRoundTrip() throws Exception {
+
+        AttributeMap attributes = AttributeMap.builder()
+            .set(Symbol.get("names"), new StringArrayVector("a", "b", "c", "d"))
+            .set(Symbol.get("dim"), new IntArrayVector(2, 2))
+            .set(Symbol.get("class"), new StringArrayVector("scores", "matrix"))
+            .build();
+        SEXP data = new DoubleArrayVector(new double[] { 1, 2, 3, 4 }, attributes);
+
+        byte[] serialized = RenjinTaskImpl.serializeSEXP(data);
+        assertTrue(RenjinVectorFormat.matches(serialized));
+        SEXP restored = RenjinTaskImpl.deserializeSEXP(serialized);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RenjinTaskImpl.serializeSEXP(data, out);
+        SEXP streamed = RenjinTaskImpl.deserializeSEXP(out.toByteArray());
+
+        for(SEXP copy : new SEXP[] { restored, streamed }) {
+            assertEquals(data, copy);
+            for(String name : new String[] { "names", "dim", "class" }) {
+                assertEquals(data.getAttribute(Symbol.get(name)),
+                             copy.getAttribute(Symbol.get(name)));
+            }
+        }
+    }
+
+    @Test
+    public void testIntLogicalStringVectorRoundTrip() {
+
+        SEXP[] vectors = {
+            new IntArrayVector(1, IntVector.NA, 3),
+            new LogicalArrayVector(true, false, true),
+            new StringArrayVector("x", null, "\u00e9t\u00e9")
+        };
+
+        for(SEXP data : vectors) {
+            byte[] serialized = RenjinTaskImpl.serializeSEXP(data);
+            assertTrue(RenjinVectorFormat.matches(serialized));
+            assertEquals(data, RenjinTaskImpl.deserializeSEXP(serialized));
+        }
+    }
+
+    @Test
+    public void testDirectBufferRoundTrip() {
+
+        SEXP data = new DoubleArrayVector(new double[100000]);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(
+            RenjinVectorFormat.size(data));
+        RenjinVectorFormat.write(data, buffer);
+        assertFalse(buffer.hasRemaining());
+
+        buffer.flip();
+        assertEquals(data, RenjinVectorFormat.read(buffer));
+    }
+
+    @Test
+    public void testUnsupportedVectorUsesRSerialization() {
+
+        SEXP data = new ListVector(new DoubleArrayVector(1, 2));
+        byte[] serialized = RenjinTaskImpl.serializeSEXP(data);
+        assertFalse(RenjinVectorFormat.matches(serialized));
+        assertEquals(data, RenjinTaskImpl.deserializeSEXP(serialized));
+    }
+
+    @Test
+    public void testSerializeToOutputStreamAndByteBuffer() throws Exception {
+
+        SEXP[] vectors = {
+            new DoubleArrayVector(1, 2, 3),
+            new ListVector(new DoubleArrayVector(1, 2))
+        };
+
+        for(SEXP data : vectors) {
+            byte[] serialized = RenjinTaskImpl.serializeSEXP(data);
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            RenjinTaskImpl.serializeSEXP(data, baos);
+            assertArrayEquals(serialized, baos.toByteArray());
+
+            ByteBuffer buffer = ByteBuffer.allocate(serialized.length);
+            RenjinTaskImpl.serializeSEXP(data, buffer);
+            assertArrayEquals(serialized, buffer.array());
+        }
+    }
+
+    @Test
+    public void testReusedBufferPayloadsIndependent() {
+
+        SEXP large = new ListVector(new DoubleArrayVector(new double[10000]));
+        SEXP small = new ListVector(new DoubleArrayVector(1));
+
+        byte[] first = RenjinTaskImpl.serializeSEXP(large);
+        byte[] second = RenjinTaskImpl.serializeSEXP(small);
+        byte[] firstCopy = Arrays.copyOf(first, first.length);
+
+        assertTrue(second.length < first.length);
+        assertArrayEquals(firstCopy, RenjinTaskImpl.serializeSEXP(large));
+        assertEquals(small, RenjinTaskImpl.deserializeSEXP(second));
+    }
+
+}
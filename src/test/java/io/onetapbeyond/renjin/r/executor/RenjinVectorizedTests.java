@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015 David Russell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.onetapbeyond.renjin.r.executor;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.List;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import org.renjin.sexp.*;
+
+/*
+ * RenjinVectorizedTests
+ *
+ * Tests renjin-r-executor support for vectorized execution
+ * of R code across many input records.
+ */
+public class RenjinVectorizedTests {
+
+    @Test
+    public void testVectorizedColumns() throws RenjinException {
+
+        Map<String,Object> columns = new LinkedHashMap<String,Object>();
+        columns.put("x", new double[] { 1, 2, 3, 4 });
+        columns.put("y", new int[] { 10, 20, 30, 40 });
+
+        List<RenjinResult> rResults = Renjin.R().code("x * y + offset")
+                                                .input("offset", 1)
+                                                .buildVectorized(columns)
+                                                .execute();
+        assertEquals(4, rResults.size());
+        for(int i = 0; i < 4; i++) {
+            RenjinResult rResult = rResults.get(i);
+            assertTrue(rResult.success());
+            assertEquals((i + 1) * (i + 1) * 10 + 1,
+                ((org.renjin.sexp.Vector) rResult.output()).getElementAsDouble(0), 0.0);
+        }
+    }
+
+    @Test
+    public void testVectorizedDataFrame() throws RenjinException {
+
+        Map<String,Object> columns = new LinkedHashMap<String,Object>();
+        columns.put("id", new String[] { "a", "b", "c" });
+        columns.put("score", new double[] { 0.5, 1.5, 2.5 });
+
+        List<RenjinResult> rResults =
+            Renjin.R().code("data.frame(id = df$id, scaled = df$score * 2, " +
+                                        "stringsAsFactors = FALSE)")
+                      .buildVectorized("df", columns)
+                      .execute();
+        assertEquals(3, rResults.size());
+        for(int i = 0; i < 3; i++) {
+            RenjinResult rResult = rResults.get(i);
+            assertTrue(rResult.success());
+            ListVector row = (ListVector) rResult.output();
+            assertEquals(2, row.length());
+        }
+    }
+
+    @Test
+    public void testVectorizedOutputMismatch() throws RenjinException {
+
+        Map<String,Object> columns = new LinkedHashMap<String,Object>();
+        columns.put("x", new double[] { 1, 2, 3 });
+
+        List<RenjinResult> rResults = Renjin.R().code("sum(x)")
+                                                .buildVectorized(columns)
+                                                .execute();
+        assertEquals(3, rResults.size());
+        for(RenjinResult rResult : rResults) {
+            assertFalse(rResult.success());
+            assertNotNull(rResult.error());
+        }
+    }
+
+    @Test
+    public void testVectorizedEchoesRecord() throws RenjinException {
+
+        Map<String,Object> columns = new LinkedHashMap<String,Object>();
+        columns.put("x", new double[] { 1, 2, 3 });
+        columns.put("y", new int[] { 10, 20, 30 });
+
+        List<RenjinResult> rResults = Renjin.R().code("x + y + offset")
+                                                .input("offset", 1)
+                                                .buildVectorized(columns)
+                                                .execute();
+        for(int i = 0; i < 3; i++) {
+            Map<String,Object> echoed = rResults.get(i).input();
+            assertEquals(2, echoed.size());
+            assertEquals(1, ((Vector) echoed.get("x")).length());
+            assertEquals(i + 1,
+                ((Vector) echoed.get("x")).getElementAsDouble(0), 0.0);
+            assertEquals((i + 1) * 10,
+                ((Vector) echoed.get("y")).getElementAsInt(0));
+        }
+    }
+
+    @Test
+    public void testVectorizedQuotedNames() throws RenjinException {
+
+        Map<String,Object> columns = new LinkedHashMap<String,Object>();
+        columns.put("a`b", new double[] { 1, 2 });
+
+        List<RenjinResult> rResults =
+            Renjin.R().code("get('my`frame')[['a`b']] * 2")
+                      .buildVectorized("my`frame", columns)
+                      .execute();
+        assertEquals(2, rResults.size());
+        for(int i = 0; i < 2; i++) {
+            assertTrue(rResults.get(i).success());
+            assertEquals((i + 1) * 2,
+                ((Vector) rResults.get(i).output()).getElementAsDouble(0), 0.0);
+        }
+    }
+
+    @Test
+    public void testVectorizedFactorLevels() throws RenjinException {
+
+        Map<String,Object> columns = new LinkedHashMap<String,Object>();
+        columns.put("x", new String[] { "lo", "hi", "lo" });
+
+        List<RenjinResult> rResults =
+            Renjin.R().code("factor(x, levels = c('lo', 'hi'))")
+                      .buildVectorized(columns)
+                      .execute();
+        assertEquals(3, rResults.size());
+        for(RenjinResult rResult : rResults) {
+            assertTrue(rResult.success());
+            assertTrue(rResult.output().inherits("factor"));
+            assertEquals(2, rResult.output()
+                .getAttribute(Symbol.get("levels")).length());
+        }
+    }
+
+    @Test(expected=RenjinException.class)
+    public void testVectorizedColumnLengthMismatch() throws RenjinException {
+        Map<String,Object> columns = new LinkedHashMap<String,Object>();
+        columns.put("x", new double[] { 1, 2, 3 });
+        columns.put("y", new double[] { 1, 2 });
+        Renjin.R().code("x + y").buildVectorized(columns);
+    }
+
+}